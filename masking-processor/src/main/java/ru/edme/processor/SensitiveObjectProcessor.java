@@ -0,0 +1,283 @@
+package ru.edme.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates an {@code ObjectMasker} for every {@code @SensitiveObject} class whose fields can all be read from the
+ * generated class, and lists the generated classes in {@code META-INF/services} for {@code ObjectMaskers} to load.
+ * Fields are read directly, private ones through a {@code VarHandle}, never through getters: a getter may compute
+ * something other than the field that the reflective path renders.
+ */
+@SupportedAnnotationTypes(SensitiveObjectProcessor.SENSITIVE_OBJECT)
+public class SensitiveObjectProcessor extends AbstractProcessor {
+    static final String SENSITIVE_OBJECT = "ru.edme.annotation.SensitiveObject";
+    static final String SENSITIVE_FIELD = "ru.edme.annotation.SensitiveField";
+    static final String OBJECT_MASKER = "ru.edme.custom.logger.ObjectMasker";
+    private static final Set<String> SIMPLE_TYPES = Set.of(
+            "java.lang.String", "java.lang.Boolean", "java.lang.Character", "java.lang.Byte", "java.lang.Short",
+            "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double"
+    );
+
+    private final Set<String> generated = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(SENSITIVE_OBJECT);
+        if (annotation == null) return false;
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+            generateMasker(type);
+        }
+        return false;
+    }
+
+    private void generateMasker(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getNestingKind() == NestingKind.LOCAL
+                || type.getNestingKind() == NestingKind.ANONYMOUS || !type.getTypeParameters().isEmpty()
+                || type.getModifiers().contains(Modifier.PRIVATE)) {
+            note(type, "not supported, reflection will be used");
+            return;
+        }
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        List<FieldAccess> fields = new ArrayList<>();
+        for (TypeElement owner : hierarchy(type)) {
+            boolean samePackage = processingEnv.getElementUtils().getPackageOf(owner).equals(pkg);
+            for (VariableElement field : ElementFilter.fieldsIn(owner.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC)) continue;
+                Access access = access(owner, field, samePackage);
+                if (access == null) {
+                    note(type, "field " + field.getSimpleName() + " is not accessible, reflection will be used");
+                    return;
+                }
+                fields.add(new FieldAccess(owner, field, access));
+            }
+        }
+        if (fields.isEmpty()) return;
+
+        String maskerName = binaryName(type).replace('$', '_') + "Masker";
+        String simpleMaskerName = maskerName.substring(maskerName.lastIndexOf('.') + 1);
+        try {
+            FileObject file = processingEnv.getFiler().createSourceFile(maskerName, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(render(pkg, simpleMaskerName, type, fields));
+            }
+            generated.add(maskerName);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + maskerName + ": " + e, type);
+        }
+    }
+
+    private String render(PackageElement pkg, String maskerName, TypeElement type, List<FieldAccess> fields) {
+        String typeName = type.getQualifiedName().toString();
+        StringBuilder constants = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        Set<String> constantNames = new HashSet<>();
+        body.append("        out.append(\"").append(type.getSimpleName()).append("{\");\n");
+        for (int i = 0; i < fields.size(); i++) {
+            FieldAccess access = fields.get(i);
+            VariableElement field = access.field();
+            String name = field.getSimpleName().toString();
+            String value = "obj." + name;
+            if (access.access() == Access.HANDLE) {
+                String handle = constantName(name, "_FIELD", constantNames);
+                constants.append("    private static final VarHandle ").append(handle)
+                        .append(" = ObjectMasker.field(").append(access.owner().getQualifiedName())
+                        .append(".class, \"").append(name).append("\");\n");
+                value = "(" + handleType(field.asType()) + ") " + handle + ".get(obj)";
+            }
+            body.append("        out.append(\"").append(i == 0 ? "" : ", ").append(name).append("=\");\n");
+            AnnotationMirror sensitive = annotation(field, SENSITIVE_FIELD);
+            if (sensitive != null) {
+                String constant = constantName(name, "_PATTERNS", constantNames);
+                constants.append("    private static final MaskingPatternSet ").append(constant)
+                        .append(" = MaskingPatternSet.of(").append(patterns(sensitive)).append(");\n");
+                body.append("        SensitiveDataMasker.appendSensitiveField(out, ").append(value).append(", ").append(constant).append(", context);\n");
+            } else {
+                // simple values too, so that they are cut at the character budget like on the reflective path
+                body.append("        SensitiveDataMasker.appendPlainField(out, ").append(value).append(", context);\n");
+            }
+        }
+        body.append("        out.append('}');\n");
+
+        StringBuilder source = new StringBuilder();
+        if (!pkg.isUnnamed()) source.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+        if (constants.indexOf(" VarHandle ") >= 0) source.append("import java.lang.invoke.VarHandle;\n\n");
+        source.append("import ru.edme.custom.logger.ObjectMasker;\n")
+                .append("import ru.edme.custom.logger.SensitiveDataMasker;\n")
+                .append("import ru.edme.custom.logger.TraversalContext;\n")
+                .append("import ru.edme.pattern.MaskingPattern;\n")
+                .append("import ru.edme.pattern.MaskingPatternSet;\n\n")
+                .append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(maskerName).append(" implements ObjectMasker<").append(typeName).append("> {\n")
+                .append(constants)
+                .append(constants.length() > 0 ? "\n" : "")
+                .append("    @Override\n")
+                .append("    public Class<").append(typeName).append("> type() {\n")
+                .append("        return ").append(typeName).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public void appendMasked(").append(typeName).append(" obj, StringBuilder out, TraversalContext context) {\n")
+                .append(body)
+                .append("    }\n")
+                .append("}\n");
+        return source.toString();
+    }
+
+    // Non-private fields visible from the masker's package are read directly, the rest through a VarHandle on their
+    // declaring class, which the masker has to be able to name.
+    private Access access(TypeElement owner, VariableElement field, boolean samePackage) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (!modifiers.contains(Modifier.PRIVATE) && (samePackage || modifiers.contains(Modifier.PUBLIC))) {
+            return Access.DIRECT;
+        }
+        for (Element type = owner; type instanceof TypeElement; type = type.getEnclosingElement()) {
+            Set<Modifier> typeModifiers = type.getModifiers();
+            if (typeModifiers.contains(Modifier.PRIVATE) || !samePackage && !typeModifiers.contains(Modifier.PUBLIC)) {
+                return null;
+            }
+        }
+        return Access.HANDLE;
+    }
+
+    // The cast for a VarHandle read: exact for the types that are appended as they are, Object for the rest, which
+    // need not be accessible from the masker.
+    private String handleType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) return type.toString();
+        return isSimple(type) ? ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString() : "Object";
+    }
+
+    // The MaskingPatternSet.of arguments: the patterns, then the rule names if there are any.
+    private String patterns(AnnotationMirror sensitive) {
+        StringBuilder patterns = new StringBuilder();
+        for (AnnotationValue element : values(sensitive, "patterns")) {
+            if (patterns.length() > 0) patterns.append(", ");
+            patterns.append("MaskingPattern.").append(((VariableElement) element.getValue()).getSimpleName());
+        }
+        List<AnnotationValue> rules = values(sensitive, "rules");
+        if (rules.isEmpty()) return patterns.toString();
+        StringBuilder arguments = new StringBuilder("new MaskingPattern[] {").append(patterns).append('}');
+        for (AnnotationValue element : rules) {
+            arguments.append(", ").append(processingEnv.getElementUtils().getConstantExpression(element.getValue()));
+        }
+        return arguments.toString();
+    }
+
+    private List<AnnotationValue> values(AnnotationMirror annotation, String name) {
+        List<AnnotationValue> values = new ArrayList<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+            if (!entry.getKey().getSimpleName().contentEquals(name)) continue;
+            Object value = entry.getValue().getValue();
+            if (value instanceof List<?> list) {
+                for (Object element : list) values.add((AnnotationValue) element);
+            } else {
+                values.add(entry.getValue());
+            }
+        }
+        return values;
+    }
+
+    private Deque<TypeElement> hierarchy(TypeElement type) {
+        Deque<TypeElement> hierarchy = new ArrayDeque<>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            hierarchy.push(current);
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement()
+                    : null;
+        }
+        return hierarchy;
+    }
+
+    private boolean isSimple(TypeMirror type) {
+        if (type.getKind().isPrimitive()) return true;
+        return type.getKind() == TypeKind.DECLARED
+                && SIMPLE_TYPES.contains(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private static String constantName(String fieldName, String suffix, Set<String> used) {
+        String base = fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase() + suffix;
+        String name = base;
+        for (int i = 2; !used.add(name); i++) name = base + "_" + i;
+        return name;
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (annotationName(mirror).equals(annotationType)) return mirror;
+        }
+        return null;
+    }
+
+    private static String annotationName(AnnotationMirror mirror) {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private void writeServiceFile() {
+        if (generated.isEmpty()) return;
+        try {
+            FileObject file = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + OBJECT_MASKER);
+            try (Writer writer = file.openWriter()) {
+                for (String masker : generated) writer.write(masker + "\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write masker service file: " + e);
+        }
+    }
+
+    private void note(TypeElement type, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "@SensitiveObject " + type.getQualifiedName() + ": " + message, type);
+    }
+
+    private enum Access {
+        DIRECT, HANDLE
+    }
+
+    private record FieldAccess(TypeElement owner, VariableElement field, Access access) {
+    }
+}
@@ -0,0 +1,73 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+import static java.util.regex.Pattern.UNICODE_CASE;
+import static java.util.regex.Pattern.compile;
+import static ru.edme.pattern.MaskingPattern.ADDRESS;
+
+/**
+ * Address tokenizer behind {@code MaskingPattern.ADDRESS} against the regex implementation it replaced,
+ * kept here verbatim as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class AddressMaskingBenchmark {
+    private static final Pattern LEGACY_OUTER = compile("(.*)");
+    
+    @Param({
+            "123456, Российская Федерация, Краснодарский край, Темрюкский район, ул. Ленина, д. 4, кв. 22",
+            "г. Москва, ул. Тверская, д. 1",
+            "ул. Ленина"
+    })
+    public String address;
+    
+    @Benchmark
+    public String tokenizer() {
+        return ADDRESS.applyTo(address);
+    }
+    
+    @Benchmark
+    public String legacyRegex() {
+        return LEGACY_OUTER.matcher(address).replaceAll(matchResult -> {
+            String value = matchResult.group(1);
+            Pattern addressPattern = compile(
+                    "(?<POSTCODE>\\b\\d{6}\\b)" +
+                            "|(?<CITY>\\b(?:г\\.\\s+|город\\s+)[^,]+)" +
+                            "|(?<REGION>\\b[^,]*?(?:край|область|регион|республика)\\b[^,]*)" +
+                            "|(?<DISTRICT>\\b[^,]*?(?:район|р-н)\\b[^,]*)" +
+                            "|(?<STREET>(?i)(?:ул\\.?|улица|пер\\.?|переулок|проспект|пр-т)\\s*[^,]+)" +
+                            "|(?<HOUSE>(?i)(?:д\\.?|дом)\\s*[^,]+)" +
+                            "|(?<FLAT>(?i)(?:кв\\.?|квартира)\\s*[^,]+)",
+                    CASE_INSENSITIVE | UNICODE_CASE
+            );
+            return addressPattern.matcher(value).replaceAll(mr -> {
+                Matcher matcher = (Matcher) mr;
+                if (matcher.group("POSTCODE") != null) return "******";
+                if (matcher.group("CITY") != null) return "г. ******";
+                if (matcher.group("REGION") != null) return "*** ***";
+                if (matcher.group("DISTRICT") != null) return "*** р-н";
+                return matcher.group().replaceFirst("\\s+.+", " ***");
+            });
+        });
+    }
+}
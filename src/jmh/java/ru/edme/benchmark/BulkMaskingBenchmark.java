@@ -0,0 +1,56 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.edme.custom.logger.BulkMasker;
+import ru.edme.custom.logger.SensitiveDataMasker;
+import ru.edme.model.Person;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Masking 100 000 {@code Person} rows into a discarding sink: one {@code mask} call per row on the calling thread
+ * against {@link BulkMasker} batches on the common pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = SECONDS)
+@Fork(1)
+public class BulkMaskingBenchmark {
+    private final List<Person> rows = new ArrayList<>();
+    private final BulkMasker bulkMasker = new BulkMasker();
+    
+    {
+        for (int i = 0; i < 100_000; i++) rows.add(Fixtures.person());
+    }
+    
+    @Benchmark
+    public void sequential() throws IOException {
+        Writer out = Writer.nullWriter();
+        for (Person row : rows) {
+            out.write(String.valueOf(SensitiveDataMasker.mask(row)));
+            out.write('\n');
+        }
+    }
+    
+    @Benchmark
+    public long bulk() throws IOException {
+        return bulkMasker.maskTo(rows, OutputStream.nullOutputStream());
+    }
+}
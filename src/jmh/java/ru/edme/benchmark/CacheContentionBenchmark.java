@@ -0,0 +1,52 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.edme.custom.logger.SensitiveDataMasker;
+import ru.edme.pattern.MaskingPattern;
+import ru.edme.pattern.MaskingPatternSet;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Eight threads hitting the pattern-set cache and the masking plans at once, with a rotating mix of pattern
+ * arrays so that lookups land on different cache entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+@Threads(8)
+public class CacheContentionBenchmark {
+    private final MaskingPattern[][] sets = {
+            {MaskingPattern.FULL_NAME},
+            {MaskingPattern.INN_10_DIGITS, MaskingPattern.INN_12_DIGITS},
+            {MaskingPattern.DATE_DD_MM_YYYY, MaskingPattern.DATE_YYYY_MM_DD},
+            {MaskingPattern.PASSPORT_SERIES, MaskingPattern.PASSPORT_NUMBER, MaskingPattern.POSTAL_CODE},
+            {MaskingPattern.EMAIL, MaskingPattern.PHONE}
+    };
+    private final Object person = Fixtures.person();
+    
+    @Benchmark
+    public MaskingPatternSet patternSetLookup() {
+        return MaskingPatternSet.of(sets[ThreadLocalRandom.current().nextInt(sets.length)]);
+    }
+    
+    @Benchmark
+    public Object maskPerson() {
+        return SensitiveDataMasker.mask(person);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.edme.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.slf4j.LoggerFactory;
+import ru.edme.model.Address;
+import ru.edme.model.Person;
+
+import java.time.LocalDate;
+
+final class Fixtures {
+    
+    private Fixtures() {
+    }
+    
+    static Person person() {
+        Person person = new Person();
+        Address address = new Address();
+        person.setFirstName("Галина");
+        person.setLastName("Искрева");
+        person.setMiddleName("Петровна");
+        person.setBirthDate(LocalDate.of(2000, 12, 20));
+        person.setPassportSeries("5657");
+        person.setPassportNumber("656565");
+        person.setPassportIssuedBy("ГУ МВД РОССИИ ПО КРАСНОДАРСКОМУ КРАЮ");
+        person.setPassportIssuedDate(LocalDate.of(2015, 11, 8));
+        person.setPassportExpiryDate(LocalDate.of(2021, 11, 8));
+        person.setPassportSubdivisionCode("023-230");
+        person.setAddress("123456, Российская Федерация, Краснодарский край, Темрюкский район, ул. Ленина, д. 4, кв. 22");
+        person.setPhone("+7(918)140-54-69");
+        person.setEmail("boor_yonk@mail.ru");
+        person.setInn("607080901000");
+        person.setSnils("314-565-256-20");
+        person.setStringDate("2023-10-20 12:00:00, 10.10.2022, 10-10-2020, 2021.10.10");
+        address.setApartment("кв. 22");
+        address.setHouse("д. 4");
+        address.setStreet("ул. Ленина");
+        person.setAddresss(address);
+        return person;
+    }
+    
+    /**
+     * Detaches the logger from the console and attaches an appender that only formats the message,
+     * so benchmarks measure masking and formatting rather than terminal I/O.
+     */
+    static org.slf4j.Logger formattingLogger(Class<?> owner, String level) {
+        Logger logger = (Logger) LoggerFactory.getLogger(owner);
+        logger.detachAndStopAllAppenders();
+        logger.setAdditive(false);
+        logger.setLevel(Level.toLevel(level));
+        FormattingAppender appender = new FormattingAppender();
+        appender.setContext(logger.getLoggerContext());
+        appender.start();
+        logger.addAppender(appender);
+        return logger;
+    }
+    
+    private static final class FormattingAppender extends AppenderBase<ILoggingEvent> {
+        private volatile int sink;
+        
+        @Override
+        protected void append(ILoggingEvent event) {
+            sink += event.getFormattedMessage().length();
+        }
+    }
+}
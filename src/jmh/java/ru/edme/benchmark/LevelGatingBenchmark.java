@@ -0,0 +1,61 @@
+package ru.edme.benchmark;
+
+import org.aspectj.lang.Aspects;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import ru.edme.aspect.LogInterceptorAspect;
+import ru.edme.aspect.MaskingMode;
+import ru.edme.model.Person;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Cost of a woven {@code log.info("...", person)} call when INFO is disabled (logger at WARN)
+ * and when it is enabled, for eager and lazy masking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class LevelGatingBenchmark {
+    @Param({"WARN", "INFO"})
+    public String level;
+    
+    @Param({"EAGER", "LAZY"})
+    public MaskingMode mode;
+    
+    private Logger log;
+    private Person person;
+    
+    @Setup
+    public void setUp() {
+        log = Fixtures.formattingLogger(LevelGatingBenchmark.class, level);
+        person = Fixtures.person();
+        Aspects.aspectOf(LogInterceptorAspect.class).setMode(mode);
+    }
+    
+    @Benchmark
+    public void infoPerson() {
+        log.info("Person: {}", person);
+    }
+    
+    @Benchmark
+    public void infoPersonGuarded() {
+        if (log.isInfoEnabled()) {
+            log.info("Person: {}", person);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.edme.custom.logger.SensitiveDataMasker;
+import ru.edme.model.Person;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * {@code mask(Person)} against {@code maskTo} into a reused buffer; run with {@code -prof gc} to compare the
+ * allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class MaskToBenchmark {
+    private final Person person = Fixtures.person();
+    private final StringBuilder buffer = new StringBuilder(1024);
+    
+    @Benchmark
+    public Object mask() {
+        return SensitiveDataMasker.mask(person);
+    }
+    
+    @Benchmark
+    public int maskTo() {
+        buffer.setLength(0);
+        SensitiveDataMasker.maskTo(person, buffer);
+        return buffer.length();
+    }
+}
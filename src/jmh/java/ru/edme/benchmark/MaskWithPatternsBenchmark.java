@@ -0,0 +1,53 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.edme.custom.logger.SensitiveDataMasker;
+import ru.edme.pattern.MaskingPattern;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static ru.edme.pattern.MaskingPattern.DATE_DD_MM_YYYY;
+import static ru.edme.pattern.MaskingPattern.DATE_YYYY_MM_DD;
+import static ru.edme.pattern.MaskingPattern.INN_10_DIGITS;
+import static ru.edme.pattern.MaskingPattern.INN_12_DIGITS;
+import static ru.edme.pattern.MaskingPattern.POSTAL_CODE;
+
+/**
+ * {@code maskWithPatterns} with one, two and three patterns, the shapes used by {@code @SensitiveField}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class MaskWithPatternsBenchmark {
+    private final MaskingPattern[] one = {INN_12_DIGITS};
+    private final MaskingPattern[] two = {INN_10_DIGITS, INN_12_DIGITS};
+    private final MaskingPattern[] three = {DATE_DD_MM_YYYY, DATE_YYYY_MM_DD, POSTAL_CODE};
+    private final String inn = "607080901000";
+    private final String dates = "2023-10-20 12:00:00, 10.10.2022, 10-10-2020, 2021.10.10, 123456";
+    
+    @Benchmark
+    public Object onePattern() {
+        return SensitiveDataMasker.maskWithPatterns(inn, one);
+    }
+    
+    @Benchmark
+    public Object twoPatterns() {
+        return SensitiveDataMasker.maskWithPatterns(inn, two);
+    }
+    
+    @Benchmark
+    public Object threePatterns() {
+        return SensitiveDataMasker.maskWithPatterns(dates, three);
+    }
+}
@@ -0,0 +1,76 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.edme.pattern.MaskingPattern;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * {@code MaskingPattern.applyTo} for every constant, on a value it masks and on one it leaves unchanged. A bare
+ * value takes the pattern's fast path where it has one; the same value inside a sentence goes through the regex.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class MaskingPatternBenchmark {
+    @Param({
+            "MASK", "EMAIL", "PHONE", "SNILS", "PASSPORT_NUMBER", "PASSPORT_SERIES", "PASSPORT_ISSUED_BY",
+            "SUBDIVISION_CODE", "DATE_DD_MM_YYYY", "DATE_YYYY_MM_DD", "INN_10_DIGITS", "INN_12_DIGITS",
+            "POSTAL_CODE", "FULL_NAME", "ADDRESS"
+    })
+    public MaskingPattern pattern;
+    
+    private String matching;
+    private String embedded;
+    private final String plain = "status=ok, attempts=3";
+    
+    @Setup
+    public void setUp() {
+        matching = switch (pattern) {
+            case MASK -> "secret";
+            case EMAIL -> "boor_yonk@mail.ru";
+            case PHONE -> "+7(918)140-54-69";
+            case SNILS -> "314-565-256-20";
+            case PASSPORT_NUMBER, POSTAL_CODE -> "656565";
+            case PASSPORT_SERIES -> "5657";
+            case PASSPORT_ISSUED_BY -> "ГУ МВД РОССИИ ПО КРАСНОДАРСКОМУ КРАЮ";
+            case SUBDIVISION_CODE -> "023-230";
+            case DATE_DD_MM_YYYY -> "10.10.2022";
+            case DATE_YYYY_MM_DD -> "2000-12-20";
+            case INN_10_DIGITS -> "6070809010";
+            case INN_12_DIGITS -> "607080901000";
+            case FULL_NAME -> "Галина";
+            case ADDRESS -> "123456, Российская Федерация, Краснодарский край, Темрюкский район, ул. Ленина, д. 4, кв. 22";
+        };
+        embedded = "value: " + matching + ".";
+    }
+    
+    @Benchmark
+    public String matching() {
+        return pattern.applyTo(matching);
+    }
+    
+    @Benchmark
+    public String embedded() {
+        return pattern.applyTo(embedded);
+    }
+    
+    @Benchmark
+    public String nonMatching() {
+        return pattern.applyTo(plain);
+    }
+}
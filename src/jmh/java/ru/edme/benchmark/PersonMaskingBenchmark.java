@@ -0,0 +1,44 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.edme.custom.logger.SensitiveDataMasker;
+import ru.edme.model.Person;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * {@code mask(Person)} with warm caches, and as the first call in a fresh JVM, where the masking plan, the
+ * generated masker lookup and the pattern sets are all built on the spot.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(MICROSECONDS)
+public class PersonMaskingBenchmark {
+    private final Person person = Fixtures.person();
+    
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+    @Fork(1)
+    public Object warm() {
+        return SensitiveDataMasker.mask(person);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public Object cold() {
+        return SensitiveDataMasker.mask(person);
+    }
+}
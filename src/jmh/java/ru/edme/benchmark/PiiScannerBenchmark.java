@@ -0,0 +1,49 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.edme.pattern.MaskingPattern;
+import ru.edme.pattern.MaskingPatternSet;
+import ru.edme.pattern.PiiScanner;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The single-pass {@link PiiScanner} against running the same patterns one after another over a log message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class PiiScannerBenchmark {
+    private static final MaskingPatternSet PATTERNS = MaskingPatternSet.of(
+            MaskingPattern.EMAIL, MaskingPattern.PHONE, MaskingPattern.SNILS,
+            MaskingPattern.INN_10_DIGITS, MaskingPattern.INN_12_DIGITS);
+    
+    @Param({
+            "Order 1042 shipped to warehouse 7 at 2024-05-01T10:15:30",
+            "Callback to +7(918)140-54-69 for client 607080901000, copy to boor_yonk@mail.ru, SNILS 314-565-256-20"
+    })
+    public String message;
+    
+    @Benchmark
+    public String scanner() {
+        return PiiScanner.scan(message);
+    }
+    
+    @Benchmark
+    public String chainedPatterns() {
+        return PATTERNS.applyTo(message);
+    }
+}
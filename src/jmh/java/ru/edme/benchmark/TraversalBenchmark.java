@@ -0,0 +1,68 @@
+package ru.edme.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.edme.annotation.SensitiveObject;
+import ru.edme.custom.logger.MaskingLimits;
+import ru.edme.custom.logger.SensitiveDataMasker;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Allocation of the cycle tracking per masking call, with many threads masking at once: a chain of nested
+ * sensitive objects, shallow enough for the inline table and deep enough to spill into the identity map. The depth
+ * limit is raised for the run so that the whole chain is traversed. Read together with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+@Threads(16)
+public class TraversalBenchmark {
+    @Param({"4", "64"})
+    public int depth;
+    
+    private Node chain;
+    private MaskingLimits limits;
+    
+    @Setup
+    public void setUp() {
+        limits = SensitiveDataMasker.getLimits();
+        SensitiveDataMasker.setLimits(new MaskingLimits(limits.maxElements(), depth + 1, limits.maxChars()));
+        chain = new Node(null);
+        for (int i = 1; i < depth; i++) chain = new Node(chain);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        SensitiveDataMasker.setLimits(limits);
+    }
+    
+    @Benchmark
+    public Object maskChain() {
+        return SensitiveDataMasker.mask(chain);
+    }
+    
+    @SensitiveObject
+    static class Node {
+        final Node next;
+        
+        Node(Node next) {
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.edme.benchmark;
+
+import org.aspectj.lang.Aspects;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+import ru.edme.aspect.LogInterceptorAspect;
+import ru.edme.aspect.MaskingMode;
+import ru.edme.model.Person;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Per-call cost of each woven logger join point with the logger set to every level, so that disabled calls
+ * (gated by the {@code if()} residue) and enabled calls (masked and formatted) can be read off one table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class WovenLevelBenchmark {
+    @Param({"ERROR", "WARN", "INFO", "DEBUG", "TRACE"})
+    public String level;
+    
+    private final Marker marker = MarkerFactory.getMarker("AUDIT");
+    private Logger log;
+    private Person person;
+    
+    @Setup
+    public void setUp() {
+        log = Fixtures.formattingLogger(WovenLevelBenchmark.class, level);
+        person = Fixtures.person();
+        Aspects.aspectOf(LogInterceptorAspect.class).setMode(MaskingMode.EAGER);
+    }
+    
+    @Benchmark
+    public void trace() {
+        log.trace("Person: {}", person);
+    }
+    
+    @Benchmark
+    public void debug() {
+        log.debug("Person: {}", person);
+    }
+    
+    @Benchmark
+    public void info() {
+        log.info("Person: {}", person);
+    }
+    
+    @Benchmark
+    public void debugWithMarker() {
+        log.debug(marker, "Person: {}", person);
+    }
+    
+    @Benchmark
+    public void debugFluent() {
+        log.atDebug().addArgument(person).addKeyValue("person", person).log("Person: {}");
+    }
+}
@@ -0,0 +1,349 @@
+package ru.edme;
+
+import ru.edme.pattern.MaskingPattern;
+import ru.edme.pattern.MaskingPatternSet;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Re-masks existing log files with {@link MaskingPattern}s, outside the application:
+ * <pre>
+ * ./gradlew scrubLogs --args="--patterns=PHONE,SNILS app.log app.masked.log"
+ * </pre>
+ * The input is split into chunks that end at a newline or, within a line longer than a chunk, at a space or tab
+ * (these bytes never occur inside a multi-byte UTF-8 character, so Cyrillic text is never cut in half); the chunks
+ * are masked line by line on all cores and written out in order.
+ * Input is only ever memory-mapped, in windows of at most one chunk, and decoded one line at a time into a buffer
+ * of a little over {@code --max-token-kb} characters. A longer line is masked in pieces that end at whitespace, so
+ * a value is never split between two of them; patterns that span whitespace, such as ADDRESS, only see one piece
+ * at a time. A token, a run of non-whitespace, longer than {@code --max-token-kb} is replaced with
+ * {@value #OVERSIZED}. The heap in use is thus about two
+ * chunks of masked output per thread plus a few line buffers, whatever the size of the file or of its lines.
+ * Malformed UTF-8 is written back as U+FFFD.
+ */
+public class LogScrubber {
+    static final MaskingPattern[] DEFAULT_PATTERNS = {
+            MaskingPattern.EMAIL, MaskingPattern.PHONE, MaskingPattern.SNILS,
+            MaskingPattern.INN_10_DIGITS, MaskingPattern.INN_12_DIGITS
+    };
+    // written in place of a token longer than maxTokenChars, which could hold a value too long to mask
+    static final String OVERSIZED = "[oversized token]";
+    
+    private final MaskingPatternSet patterns;
+    private final int chunkSize;
+    private final int maxPending;
+    private final int maxTokenChars;
+    private final ForkJoinPool pool;
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicLong linesDone = new AtomicLong();
+    private final AtomicLong tokensOversized = new AtomicLong();
+    
+    LogScrubber(MaskingPattern[] patterns, int chunkSize, int maxPending, int maxTokenChars, ForkJoinPool pool) {
+        this.patterns = MaskingPatternSet.of(patterns);
+        this.chunkSize = chunkSize;
+        this.maxPending = maxPending;
+        this.maxTokenChars = maxTokenChars;
+        this.pool = pool;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        MaskingPattern[] patterns = DEFAULT_PATTERNS;
+        int chunkMb = 16;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int progressSeconds = 5;
+        int maxTokenKb = 64;
+        Deque<String> files = new ArrayDeque<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--patterns=")) {
+                    patterns = Arrays.stream(arg.substring(11).split(","))
+                            .map(String::trim)
+                            .map(MaskingPattern::valueOf)
+                            .toArray(MaskingPattern[]::new);
+                } else if (arg.startsWith("--chunk-mb=")) {
+                    chunkMb = Integer.parseInt(arg.substring(11));
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring(10));
+                } else if (arg.startsWith("--max-token-kb=")) {
+                    maxTokenKb = Integer.parseInt(arg.substring(15));
+                } else if (arg.startsWith("--progress-seconds=")) {
+                    progressSeconds = Integer.parseInt(arg.substring(19));
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.size() != 2) throw new IllegalArgumentException("Expected an input and an output file");
+            if (chunkMb < 1 || chunkMb > 1024) throw new IllegalArgumentException("--chunk-mb must be within 1..1024");
+            if (threads < 1) throw new IllegalArgumentException("--threads must be positive");
+            if (maxTokenKb < 1 || maxTokenKb > 65536) throw new IllegalArgumentException("--max-token-kb must be within 1..65536");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LogScrubber [--patterns=EMAIL,PHONE,...] [--chunk-mb=16] [--threads=N] "
+                    + "[--max-token-kb=64] [--progress-seconds=5] <input> <output>");
+            System.exit(2);
+            return;
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            LogScrubber scrubber = new LogScrubber(patterns, chunkMb << 20, 2 * threads, maxTokenKb << 10, pool);
+            scrubber.scrub(Path.of(files.getFirst()), Path.of(files.getLast()), System.err, progressSeconds);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    void scrub(Path input, Path output, PrintStream progress, int progressSeconds) throws IOException {
+        // opening the output truncates it, which would destroy an input scrubbed in place before it is read
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IllegalArgumentException("Output " + output + " is the input file; write to another file");
+        }
+        long start = System.nanoTime();
+        long size;
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-scrubber-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel in = FileChannel.open(input, READ);
+             FileChannel out = FileChannel.open(output, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            size = in.size();
+            long total = size;
+            reporter.scheduleAtFixedRate(() -> report(progress, total, start),
+                    progressSeconds, progressSeconds, TimeUnit.SECONDS);
+            scrub(in, out);
+        } finally {
+            reporter.shutdownNow();
+        }
+        report(progress, size, start);
+    }
+    
+    void scrub(FileChannel in, FileChannel out) throws IOException {
+        Deque<ForkJoinTask<MaskedChunk>> pending = new ArrayDeque<>(maxPending);
+        long size = in.size();
+        long position = 0;
+        try {
+            while (position < size) {
+                long start = position;
+                long end = chunkEnd(in, position, size);
+                position = end;
+                if (pending.size() == maxPending) write(out, pending.removeFirst().join());
+                pending.addLast(pool.submit(() -> new ChunkMasker().mask(in, start, end, end == size)));
+            }
+            while (!pending.isEmpty()) write(out, pending.removeFirst().join());
+        } finally {
+            for (ForkJoinTask<MaskedChunk> task : pending) task.cancel(false);
+        }
+    }
+    
+    // Just after the last newline within chunkSize bytes of position, else just before the last space or tab, so
+    // that no token spans two chunks. A token longer than that makes the chunk end with it, which is searched for in
+    // chunk-sized windows, so nothing larger than a chunk is ever mapped.
+    private long chunkEnd(FileChannel in, long position, long size) throws IOException {
+        long end = Math.min(position + chunkSize, size);
+        if (end == size) return end;
+        MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+        for (int i = window.limit() - 1; i >= 0; i--) {
+            if (window.get(i) == '\n') return position + i + 1;
+        }
+        for (int i = window.limit() - 1; i > 0; i--) {
+            if (isBlank(window.get(i))) return position + i;
+        }
+        while (end < size) {
+            long from = end;
+            end = Math.min(from + chunkSize, size);
+            window = in.map(FileChannel.MapMode.READ_ONLY, from, end - from);
+            for (int i = 0; i < window.limit(); i++) {
+                if (window.get(i) == '\n') return from + i + 1;
+                if (isBlank(window.get(i))) return from + i;
+            }
+        }
+        return size;
+    }
+    
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+    
+    private void write(FileChannel out, MaskedChunk chunk) throws IOException {
+        ByteBuffer bytes = chunk.bytes();
+        while (bytes.hasRemaining()) out.write(bytes);
+        bytesDone.addAndGet(chunk.sourceBytes());
+        linesDone.addAndGet(chunk.lines());
+        tokensOversized.addAndGet(chunk.oversized());
+    }
+    
+    private void report(PrintStream progress, long total, long start) {
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+        long bytes = bytesDone.get();
+        long lines = linesDone.get();
+        progress.printf("%,d / %,d bytes, %,d lines (%,d oversized tokens), %.1f MB/s, %,.0f lines/s%n",
+                bytes, total, lines, tokensOversized.get(), bytes / seconds / (1 << 20), lines / seconds);
+    }
+    
+    private record MaskedChunk(ByteBuffer bytes, long sourceBytes, int lines, int oversized) {
+    }
+    
+    // One per task. The chunk is read through windows of at most chunkSize mapped bytes and decoded a line at a
+    // time into a buffer of maxTokenChars and a little; only the masked output of the chunk grows with the chunk.
+    private final class ChunkMasker {
+        private final CharsetDecoder decoder = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharsetEncoder encoder = UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // room for a whitespace, a token of maxTokenChars and the next character, which may take two chars
+        private final CharBuffer line = CharBuffer.allocate(maxTokenChars + 3);
+        private final StringBuilder masked = new StringBuilder();
+        private ByteBuffer output;
+        // part of the current line has been written already
+        private boolean split;
+        // the rest of an oversized token is dropped up to the next whitespace
+        private boolean skipping;
+        private int lines;
+        private int oversized;
+        
+        MaskedChunk mask(FileChannel in, long start, long end, boolean last) throws IOException {
+            output = ByteBuffer.allocate((int) Math.min(end - start, chunkSize) + 64);
+            long position = start;
+            while (position < end) {
+                // four bytes hold any character, so every window makes progress
+                long length = Math.min(Math.max(chunkSize, 4), end - position);
+                MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                position += length - maskWindow(window, position + length == end);
+            }
+            // a chunk that ends within a line leaves the rest of the line to the next chunk
+            if (line.position() > 0 || split) {
+                endLine(false);
+                if (last) lines++;
+            }
+            return new MaskedChunk(output.flip(), end - start, lines, oversized);
+        }
+        
+        // Returns how many bytes at the end of the window begin a character it cuts; the next window rereads them.
+        private int maskWindow(ByteBuffer window, boolean last) {
+            while (window.hasRemaining()) {
+                int newline = window.position();
+                while (newline < window.limit() && window.get(newline) != '\n') newline++;
+                boolean endOfLine = newline < window.limit();
+                boolean endOfInput = endOfLine || last;
+                ByteBuffer piece = window.duplicate().limit(newline);
+                while (decoder.decode(piece, line, endOfInput).isOverflow()) spill();
+                if (!endOfInput) return piece.remaining();
+                while (decoder.flush(line).isOverflow()) spill();
+                window.position(endOfLine ? newline + 1 : newline);
+                if (endOfLine) endLine(true);
+            }
+            return 0;
+        }
+        
+        // The buffer is full: masks and writes it up to its last whitespace and keeps the token after it, which may
+        // go on. With no whitespace but maybe at the start, the buffer holds the start of an oversized token.
+        private void spill() {
+            line.flip();
+            split = true;
+            if (skipping) {
+                int end = 0;
+                while (end < line.limit() && !Character.isWhitespace(line.get(end))) end++;
+                skipping = end == line.limit();
+                line.position(end);
+                if (line.position() > 0) {
+                    line.compact();
+                    return;
+                }
+            }
+            int boundary = line.limit() - 1;
+            while (boundary >= 0 && !Character.isWhitespace(line.get(boundary))) boundary--;
+            if (boundary > 0) {
+                write(line.subSequence(0, boundary));
+                line.position(boundary);
+            } else {
+                write(line.subSequence(0, boundary + 1));
+                masked.append(OVERSIZED);
+                oversized++;
+                line.position(line.limit());
+                skipping = true;
+            }
+            encode(masked);
+            line.compact();
+        }
+        
+        private void endLine(boolean newline) {
+            line.flip();
+            if (skipping) {
+                while (line.hasRemaining() && !Character.isWhitespace(line.get(line.position()))) line.get();
+                skipping = false;
+            }
+            CharBuffer rest = line.slice();
+            int length = rest.length();
+            boolean carriageReturn = length > 0 && rest.get(length - 1) == '\r';
+            write(carriageReturn ? rest.subSequence(0, length - 1) : rest);
+            if (carriageReturn) masked.append('\r');
+            if (newline) {
+                masked.append('\n');
+                lines++;
+            }
+            encode(masked);
+            line.clear();
+            decoder.reset();
+            split = false;
+        }
+        
+        // Masks chars into masked, with every token longer than maxTokenChars replaced by OVERSIZED.
+        private void write(CharSequence chars) {
+            masked.setLength(0);
+            int from = 0;
+            int tokenStart = 0;
+            for (int i = 0; i <= chars.length(); i++) {
+                if (i < chars.length() && !Character.isWhitespace(chars.charAt(i))) continue;
+                if (i - tokenStart > maxTokenChars) {
+                    patterns.applyTo(chars.subSequence(from, tokenStart), masked);
+                    masked.append(OVERSIZED);
+                    oversized++;
+                    from = i;
+                }
+                tokenStart = i + 1;
+            }
+            patterns.applyTo(chars.subSequence(from, chars.length()), masked);
+        }
+        
+        private void encode(CharSequence chars) {
+            CharBuffer source = CharBuffer.wrap(chars);
+            while (encoder.encode(source, output, true).isOverflow()) {
+                output = ByteBuffer.allocate(2 * output.capacity()).put(output.flip());
+            }
+            encoder.reset();
+        }
+    }
+}
@@ -11,4 +11,7 @@ import java.lang.annotation.Target;
 @Target({ElementType.FIELD, ElementType.PARAMETER})
 public @interface SensitiveField {
     MaskingPattern[] patterns() default {};
+    
+    // names of MaskingRules, applied after the patterns; built-in names are the MaskingPattern constants
+    String[] rules() default {};
 }
@@ -0,0 +1,13 @@
+package ru.edme.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Getters of @SensitiveObject classes called from the annotated method or type return the real values of their
+// @SensitiveFields; everywhere else they return masked ones.
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.CONSTRUCTOR, ElementType.TYPE})
+public @interface Unmasked {
+}
@@ -0,0 +1,165 @@
+package ru.edme.aspect;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.SourceLocation;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limits logging per call site, keyed by the static join point of the logger call, so that one call site
+ * firing in a loop cannot drown the others or pay for masking thousands of times a second.
+ * <p>
+ * Each call site has a token bucket of {@code burst} events refilled at {@code eventsPerSecond}, kept as a single
+ * theoretical arrival time that is advanced by compare-and-set (the generic cell rate algorithm). A rejected call
+ * only reads it, so a call site under a storm sees no CAS contention; rejections are counted in {@link LongAdder}s.
+ * At most once per {@code summaryInterval} a call site that suppressed events logs a one-line summary at its own
+ * level, from whichever of its calls comes first. A background thread flushes the summaries of call sites that
+ * have gone quiet, so the end of a storm is reported too; {@link #close()} flushes whatever is still pending.
+ */
+public final class CallSiteRateLimiter implements AutoCloseable {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final long summaryIntervalNanos;
+    private final double eventsPerSecond;
+    private final int burst;
+    private final Map<JoinPoint.StaticPart, CallSite> callSites = new ConcurrentHashMap<>();
+    private final LongAdder suppressed = new LongAdder();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "masking-rate-limit");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public CallSiteRateLimiter(double eventsPerSecond, int burst, Duration summaryInterval) {
+        if (!(eventsPerSecond > 0)) throw new IllegalArgumentException("eventsPerSecond must be positive: " + eventsPerSecond);
+        if (burst < 1) throw new IllegalArgumentException("burst must be positive: " + burst);
+        if (summaryInterval.isNegative()) throw new IllegalArgumentException("summaryInterval must not be negative");
+        this.eventsPerSecond = eventsPerSecond;
+        this.burst = burst;
+        this.intervalNanos = Math.max(1, (long) (1e9 / eventsPerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+        this.summaryIntervalNanos = summaryInterval.toNanos();
+        long flushNanos = summaryIntervalNanos > 0 ? summaryIntervalNanos : TimeUnit.SECONDS.toNanos(1);
+        flusher.scheduleWithFixedDelay(() -> flush(false), flushNanos, flushNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Returns whether the call at {@code site} may be logged. Logs the pending summary of the call site through
+     * {@code logger} when it is due.
+     */
+    public boolean tryAcquire(JoinPoint.StaticPart site, Logger logger) {
+        CallSite callSite = callSites.computeIfAbsent(site, CallSite::new);
+        long now = System.nanoTime();
+        if (callSite.logger != logger) callSite.logger = logger;
+        boolean acquired = callSite.tryAcquire(now);
+        if (!acquired) {
+            callSite.pending.increment();
+            callSite.suppressed.increment();
+            suppressed.increment();
+        }
+        if (callSite.isSummaryDue(now)) callSite.logSummary(logger);
+        return acquired;
+    }
+    
+    public long suppressed() {
+        return suppressed.sum();
+    }
+    
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush(true);
+    }
+    
+    // Logs the summaries that are due, or with force all pending ones, through the logger last seen at each site.
+    private void flush(boolean force) {
+        long now = System.nanoTime();
+        for (CallSite callSite : callSites.values()) {
+            if (force || callSite.isSummaryDue(now)) callSite.logSummary(callSite.logger);
+        }
+    }
+    
+    public Map<String, Object> describe(int topSites) {
+        Map<String, Long> sites = new LinkedHashMap<>();
+        callSites.values().stream()
+                .filter(callSite -> callSite.suppressed.sum() > 0)
+                .sorted(Comparator.comparingLong((CallSite callSite) -> callSite.suppressed.sum()).reversed())
+                .limit(topSites)
+                .forEach(callSite -> sites.put(callSite.location, callSite.suppressed.sum()));
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("eventsPerSecond", eventsPerSecond);
+        description.put("burst", burst);
+        description.put("summaryInterval", Duration.ofNanos(summaryIntervalNanos).toString());
+        description.put("suppressed", suppressed());
+        description.put("topSuppressedSites", sites);
+        Map<String, Long> pending = new LinkedHashMap<>();
+        callSites.values().stream()
+                .filter(callSite -> callSite.pending.sum() > 0)
+                .sorted(Comparator.comparingLong((CallSite callSite) -> callSite.pending.sum()).reversed())
+                .limit(topSites)
+                .forEach(callSite -> pending.put(callSite.location, callSite.pending.sum()));
+        description.put("pendingSummaries", pending);
+        return description;
+    }
+    
+    private final class CallSite {
+        private final String location;
+        private final String level;
+        private final AtomicLong theoreticalArrival;
+        private final AtomicLong nextSummary;
+        private final LongAdder pending = new LongAdder();
+        private final LongAdder suppressed = new LongAdder();
+        private volatile Logger logger;
+        
+        CallSite(JoinPoint.StaticPart site) {
+            SourceLocation source = site.getSourceLocation();
+            this.location = source != null ? source.getWithinType().getName() + ":" + source.getLine() : site.toShortString();
+            String method = site.getSignature().getName();
+            // Logger.atError() and the like for the fluent API
+            this.level = method.startsWith("at") ? method.substring(2).toLowerCase(Locale.ROOT) : method;
+            long now = System.nanoTime();
+            this.theoreticalArrival = new AtomicLong(now);
+            this.nextSummary = new AtomicLong(now + summaryIntervalNanos);
+        }
+        
+        boolean tryAcquire(long now) {
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                if (arrival - now > toleranceNanos) return false;
+                long next = (arrival - now > 0 ? arrival : now) + intervalNanos;
+                if (theoreticalArrival.compareAndSet(arrival, next)) return true;
+            }
+        }
+        
+        boolean isSummaryDue(long now) {
+            long due = nextSummary.get();
+            return now - due >= 0 && pending.sum() > 0 && nextSummary.compareAndSet(due, now + summaryIntervalNanos);
+        }
+        
+        // Subtracting what was read keeps the increments that race with the summary for the next one.
+        void logSummary(Logger logger) {
+            long count = pending.sum();
+            if (count <= 0 || logger == null) return;
+            pending.add(-count);
+            String message = "Suppressed " + count + " similar log events at " + location;
+            switch (level) {
+                case "trace" -> logger.trace(message);
+                case "debug" -> logger.debug(message);
+                case "info" -> logger.info(message);
+                case "warn" -> logger.warn(message);
+                default -> logger.error(message);
+            }
+        }
+    }
+}
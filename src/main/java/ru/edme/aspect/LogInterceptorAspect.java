@@ -1,45 +1,237 @@
 package ru.edme.aspect;
 
+import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.Marker;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.slf4j.spi.NOPLoggingEventBuilder;
+import ru.edme.pattern.PiiScanner;
+
+import java.util.function.Supplier;
 
 import static java.util.Arrays.stream;
+import static ru.edme.custom.logger.DeferredMasked.deferred;
+import static ru.edme.custom.logger.JsonMasked.json;
+import static ru.edme.custom.logger.LazyMasked.lazy;
 import static ru.edme.custom.logger.SensitiveDataMasker.mask;
 
 @Aspect
 public class LogInterceptorAspect {
+    // Static because the if() residues of messageCall and builderCall read them; there is one aspect instance anyway.
+    private static volatile boolean scan;
+    // null when rate limiting is off
+    private static volatile CallSiteRateLimiter rateLimiter;
+    private volatile MaskingMode mode = MaskingMode.EAGER;
+    
+    // The if() residues run before the join point's argument array is built; a disabled call goes straight
+    // to the logger. Calls without arguments to format are advised only for scanning or rate limiting.
+    @Pointcut("call(* org.slf4j.Logger.trace(String, *, ..)) && target(logger) && if()")
+    public static boolean traceCall(Logger logger) {
+        return logger.isTraceEnabled();
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.debug(String, *, ..)) && target(logger) && if()")
+    public static boolean debugCall(Logger logger) {
+        return logger.isDebugEnabled();
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.info(String, *, ..)) && target(logger) && if()")
+    public static boolean infoCall(Logger logger) {
+        return logger.isInfoEnabled();
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.warn(String, *, ..)) && target(logger) && if()")
+    public static boolean warnCall(Logger logger) {
+        return logger.isWarnEnabled();
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.error(String, *, ..)) && target(logger) && if()")
+    public static boolean errorCall(Logger logger) {
+        return logger.isErrorEnabled();
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.trace(org.slf4j.Marker, String, *, ..)) && target(logger) && args(marker, ..) && if()")
+    public static boolean traceMarkerCall(Logger logger, Marker marker) {
+        return logger.isTraceEnabled(marker);
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.debug(org.slf4j.Marker, String, *, ..)) && target(logger) && args(marker, ..) && if()")
+    public static boolean debugMarkerCall(Logger logger, Marker marker) {
+        return logger.isDebugEnabled(marker);
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.info(org.slf4j.Marker, String, *, ..)) && target(logger) && args(marker, ..) && if()")
+    public static boolean infoMarkerCall(Logger logger, Marker marker) {
+        return logger.isInfoEnabled(marker);
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.warn(org.slf4j.Marker, String, *, ..)) && target(logger) && args(marker, ..) && if()")
+    public static boolean warnMarkerCall(Logger logger, Marker marker) {
+        return logger.isWarnEnabled(marker);
+    }
+    
+    @Pointcut("call(* org.slf4j.Logger.error(org.slf4j.Marker, String, *, ..)) && target(logger) && args(marker, ..) && if()")
+    public static boolean errorMarkerCall(Logger logger, Marker marker) {
+        return logger.isErrorEnabled(marker);
+    }
+    
+    // Plain messages carry nothing to mask unless scan mode is on, e.g. log.info("user " + email), but are rate
+    // limited like any other call. The rate limiter's own summaries are not.
+    @Pointcut("(call(* org.slf4j.Logger.trace(String)) || call(* org.slf4j.Logger.debug(String)) || " +
+            "call(* org.slf4j.Logger.info(String)) || call(* org.slf4j.Logger.warn(String)) || " +
+            "call(* org.slf4j.Logger.error(String))) && !within(ru.edme.aspect.CallSiteRateLimiter) && " +
+            "target(logger) && if()")
+    public static boolean messageCall(Logger logger, JoinPoint.StaticPart staticPart) {
+        if (!scan && rateLimiter == null) return false;
+        return switch (staticPart.getSignature().getName()) {
+            case "trace" -> logger.isTraceEnabled();
+            case "debug" -> logger.isDebugEnabled();
+            case "info" -> logger.isInfoEnabled();
+            case "warn" -> logger.isWarnEnabled();
+            default -> logger.isErrorEnabled();
+        };
+    }
+    
+    // Logger.atXxx() hands out the NOP builder when the level is disabled.
+    @Pointcut("target(builder) && if()")
+    public static boolean enabledBuilder(LoggingEventBuilder builder) {
+        return !(builder instanceof NOPLoggingEventBuilder);
+    }
+    
+    // The fluent API is rate limited where the builder is created, at the level of the atXxx() call.
+    @Pointcut("(call(* org.slf4j.Logger.atTrace()) || call(* org.slf4j.Logger.atDebug()) || " +
+            "call(* org.slf4j.Logger.atInfo()) || call(* org.slf4j.Logger.atWarn()) || " +
+            "call(* org.slf4j.Logger.atError())) && target(logger) && if()")
+    public static boolean builderCall(Logger logger) {
+        return rateLimiter != null;
+    }
+    
+    @Pointcut("traceCall(logger) || debugCall(logger) || infoCall(logger) || warnCall(logger) || errorCall(logger)")
+    public void loggerMethods(Logger logger) {}
+    
+    @Pointcut("traceMarkerCall(logger, marker) || debugMarkerCall(logger, marker) || infoMarkerCall(logger, marker) || " +
+            "warnMarkerCall(logger, marker) || errorMarkerCall(logger, marker)")
+    public void markerLoggerMethods(Logger logger, Marker marker) {}
     
-    @Pointcut("call(* org.slf4j.Logger.info(..)) || " +
-            "call(* org.slf4j.Logger.error(..)) || " +
-            "call(* org.slf4j.Logger.warn(..))")
-    public void loggerMethods() {}
+    @Around("loggerMethods(logger)")
+    public Object maskSensitiveLogData(ProceedingJoinPoint joinPoint, Logger logger) throws Throwable {
+        if (isSuppressed(joinPoint.getStaticPart(), logger)) return null;
+        return joinPoint.proceed(maskArguments(logger, joinPoint.getArgs(), 1));
+    }
+    
+    @Around("markerLoggerMethods(logger, marker)")
+    public Object maskSensitiveMarkerLogData(ProceedingJoinPoint joinPoint, Logger logger, Marker marker) throws Throwable {
+        if (isSuppressed(joinPoint.getStaticPart(), logger)) return null;
+        return joinPoint.proceed(maskArguments(logger, joinPoint.getArgs(), 2));
+    }
+    
+    @Around("messageCall(logger)")
+    public Object maskMessage(ProceedingJoinPoint joinPoint, Logger logger) throws Throwable {
+        if (isSuppressed(joinPoint.getStaticPart(), logger)) return null;
+        if (!scan) return joinPoint.proceed();
+        return joinPoint.proceed(new Object[] {logger, PiiScanner.scan((String) joinPoint.getArgs()[0])});
+    }
+    
+    // A suppressed call gets the NOP builder, which the advice on the builder's methods skips.
+    @Around("builderCall(logger)")
+    public Object limitBuilder(ProceedingJoinPoint joinPoint, Logger logger) throws Throwable {
+        Object builder = joinPoint.proceed();
+        if (builder instanceof NOPLoggingEventBuilder) return builder;
+        return isSuppressed(joinPoint.getStaticPart(), logger) ? NOPLoggingEventBuilder.singleton() : builder;
+    }
     
-    @Around("loggerMethods()")
-    public Object maskSensitiveLogData(ProceedingJoinPoint joinPoint) throws Throwable {
+    @Around("call(* org.slf4j.spi.LoggingEventBuilder.log(String, *, ..)) && enabledBuilder(builder)")
+    public Object maskFluentLog(ProceedingJoinPoint joinPoint, LoggingEventBuilder builder) throws Throwable {
+        return joinPoint.proceed(maskArguments(builder, joinPoint.getArgs(), 1));
+    }
+    
+    @Around("(call(* org.slf4j.spi.LoggingEventBuilder.addArgument(..)) || " +
+            "call(* org.slf4j.spi.LoggingEventBuilder.addKeyValue(..))) && enabledBuilder(builder)")
+    public Object maskFluentValue(ProceedingJoinPoint joinPoint, LoggingEventBuilder builder) throws Throwable {
         Object[] args = joinPoint.getArgs();
+        int last = args.length - 1;
+        MaskingMode mode = this.mode;
+        // key-value pairs are not rendered by %maskedMsg, so a deferred value would only ever print its placeholder
+        if (mode == MaskingMode.DEFERRED && last > 0) mode = MaskingMode.LAZY;
         
-        if (args.length <= 1) {
-            return joinPoint.proceed();
-        }
-        
-        Object[] maskedArgs = new Object[args.length];
-        maskedArgs[0] = args[0];
+        Object[] proceedArgs = new Object[args.length + 1];
+        proceedArgs[0] = builder;
+        System.arraycopy(args, 0, proceedArgs, 1, args.length);
+        Class<?> valueType = ((MethodSignature) joinPoint.getSignature()).getParameterTypes()[last];
+        proceedArgs[last + 1] = valueType == Supplier.class
+                ? maskingSupplier((Supplier<?>) args[last], mode)
+                : maskArgument(args[last], mode);
+        return joinPoint.proceed(proceedArgs);
+    }
+    
+    public MaskingMode getMode() {
+        return mode;
+    }
+    
+    public void setMode(MaskingMode mode) {
+        this.mode = mode;
+    }
+    
+    public CallSiteRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+    
+    public void setRateLimiter(CallSiteRateLimiter rateLimiter) {
+        LogInterceptorAspect.rateLimiter = rateLimiter;
+    }
+    
+    public boolean isScan() {
+        return scan;
+    }
+    
+    public void setScan(boolean scan) {
+        LogInterceptorAspect.scan = scan;
+    }
+    
+    // Checked before the arguments are touched: a suppressed call costs no masking. Logger methods return void.
+    private boolean isSuppressed(JoinPoint.StaticPart site, Logger logger) {
+        CallSiteRateLimiter limiter = rateLimiter;
+        return limiter != null && !limiter.tryAcquire(site, logger);
+    }
+    
+    // With the target bound, proceed(Object[]) expects it ahead of the call's own arguments. The message template
+    // sits right before the first masked argument.
+    private Object[] maskArguments(Object target, Object[] args, int firstMasked) {
+        MaskingMode mode = this.mode;
+        Object[] maskedArgs = new Object[args.length + 1];
+        maskedArgs[0] = target;
         
-        for (int i = 1; i < args.length; i++) {
-            maskedArgs[i] = maskArgument(args[i]);
+        for (int i = 0; i < args.length; i++) {
+            maskedArgs[i + 1] = i < firstMasked ? args[i] : maskArgument(args[i], mode);
         }
+        if (scan) maskedArgs[firstMasked] = PiiScanner.scan((String) args[firstMasked - 1]);
         
-        return joinPoint.proceed(maskedArgs);
+        return maskedArgs;
+    }
+    
+    private Supplier<Object> maskingSupplier(Supplier<?> supplier, MaskingMode mode) {
+        if (supplier == null) return null;
+        return () -> maskArgument(supplier.get(), mode);
     }
     
-    private Object maskArgument(Object arg) {
+    private Object maskArgument(Object arg, MaskingMode mode) {
         if (arg instanceof Object[] array) {
             return stream(array)
-                    .map(this::maskArgument)
+                    .map(element -> maskArgument(element, mode))
                     .toArray();
         }
-        return mask(arg);
+        if (arg instanceof Throwable) return arg;
+        if (scan && arg instanceof String str) return PiiScanner.scan(str);
+        return switch (mode) {
+            case EAGER -> mask(arg);
+            case LAZY -> lazy(arg);
+            case DEFERRED -> deferred(arg);
+            case JSON -> json(arg);
+        };
     }
-}
\ No newline at end of file
+}
@@ -3,67 +3,77 @@ package ru.edme.aspect;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
-import ru.edme.annotation.SensitiveField;
-import ru.edme.annotation.SensitiveObject;
-import ru.edme.custom.logger.SensitiveDataMasker;
-import ru.edme.pattern.MaskingPattern;
+import ru.edme.custom.logger.MaskingPlan;
+import ru.edme.custom.logger.MaskingPlan.FieldPlan;
+import ru.edme.pattern.MaskingPatternSet;
 
-import java.beans.Introspector;
-import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 
 @Aspect
 public class MaskingAspect {
 
-    @Pointcut("call(* org.slf4j.Logger.info(..)) || " +
-            "call(* org.slf4j.Logger.warn(..)) || " +
-            "call(* org.slf4j.Logger.error(..))")
-    public void loggerMethods() {}
+    private static final ClassValue<Getters> GETTERS = new ClassValue<>() {
+        @Override
+        protected Getters computeValue(Class<?> type) {
+            return Getters.of(type);
+        }
+    };
 
-    @Around("call(public * ru.edme.model..get*(..)) && " +
-            "target(targetObj)")
-    public Object maskGetter(ProceedingJoinPoint pjp, Object targetObj) throws Throwable {
+    // Getter results are masked wherever they are used, so a value on its way to a log is masked whoever forgot
+    // what; code that needs the real values opts out with @Unmasked, which is decided at weave time.
+    @Around("call(public * ru.edme.model..get*()) && target(target) && " +
+            "!withincode(@ru.edme.annotation.Unmasked * *(..)) && " +
+            "!withincode(@ru.edme.annotation.Unmasked new(..)) && " +
+            "!within(@ru.edme.annotation.Unmasked *)")
+    public Object maskGetter(ProceedingJoinPoint pjp, Object target) throws Throwable {
+        Object original = pjp.proceed();
 
-        Class<?> targetClass = targetObj.getClass();
-        if (!targetClass.isAnnotationPresent(SensitiveObject.class)) {
-            return pjp.proceed();
+        if (original instanceof String str) {
+            MaskingPatternSet patterns = GETTERS.get(target.getClass()).patterns(pjp.getSignature().getName());
+            if (patterns != null) return patterns.applyTo(str);
         }
 
-        MethodSignature sig = (MethodSignature) pjp.getSignature();
-        String methodName = sig.getName();
-        if (!methodName.startsWith("get") || methodName.length() == 3) {
-            return pjp.proceed();
-        }
+        return original;
+    }
 
-        String prop = Introspector.decapitalize(methodName.substring(3));
-        Field field;
-        try {
-            field = findField(targetClass, prop);
-        } catch (NoSuchFieldException e) {
-            return pjp.proceed();
-        }
+    // The sensitive getters of a class, by name. Looked up by the runtime class of the target, so calls through a
+    // supertype are covered; classes that are not @SensitiveObjects have none, which costs a ClassValue lookup.
+    private static final class Getters {
+        private static final Getters NONE = new Getters(new String[0], new MaskingPatternSet[0]);
 
-        SensitiveField ann = field.getAnnotation(SensitiveField.class);
-        Object original = pjp.proceed();
+        private final String[] names;
+        private final MaskingPatternSet[] patterns;
 
-        if (ann != null && original instanceof String str) {
-            MaskingPattern[] patterns = ann.patterns();
-            return SensitiveDataMasker.maskWithPatterns(str, patterns);
+        private Getters(String[] names, MaskingPatternSet[] patterns) {
+            this.names = names;
+            this.patterns = patterns;
         }
 
-        return original;
-    }
+        // A subclass proxy, such as Hibernate's, is not annotated itself; the entity class it extends is.
+        static Getters of(Class<?> type) {
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                MaskingPlan plan = MaskingPlan.of(c);
+                if (!plan.isSensitiveObject()) continue;
+                List<String> names = new ArrayList<>();
+                List<MaskingPatternSet> patterns = new ArrayList<>();
+                for (FieldPlan field : plan.fields()) {
+                    if (!field.isSensitive()) continue;
+                    String name = field.name();
+                    names.add("get" + Character.toUpperCase(name.charAt(0)) + name.substring(1));
+                    patterns.add(field.patterns());
+                }
+                return names.isEmpty() ? NONE
+                        : new Getters(names.toArray(String[]::new), patterns.toArray(MaskingPatternSet[]::new));
+            }
+            return NONE;
+        }
 
-    private Field findField(Class<?> clazz, String fieldName) throws NoSuchFieldException {
-        Class<?> currentClass = clazz;
-        while (currentClass != null) {
-            try {
-                return currentClass.getDeclaredField(fieldName);
-            } catch (NoSuchFieldException e) {
-                currentClass = currentClass.getSuperclass();
+        MaskingPatternSet patterns(String getter) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(getter)) return patterns[i];
             }
+            return null;
         }
-        throw new NoSuchFieldException("Field " + fieldName + " not found in " + clazz);
     }
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package ru.edme.aspect;
+
+public enum MaskingMode {
+    EAGER,
+    LAZY,
+    DEFERRED,
+    JSON
+}
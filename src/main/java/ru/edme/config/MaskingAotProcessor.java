@@ -0,0 +1,37 @@
+package ru.edme.config;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.ReflectionHints;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * Registers the declared fields of every {@code @SensitiveObject} class in the packages the warmup scans, and of their
+ * superclasses, for reflection in native images: masking reads them through {@code getDeclaredFields()}. The
+ * {@code masking.warmup} properties are bound from the build-time environment, since no bean exists yet.
+ */
+public class MaskingAotProcessor implements BeanFactoryInitializationAotProcessor {
+    
+    @Override
+    public BeanFactoryInitializationAotContribution processAheadOfTime(ConfigurableListableBeanFactory beanFactory) {
+        MaskingProperties.Warmup warmup = Binder.get(beanFactory.getBean(Environment.class))
+                .bind("masking.warmup", MaskingProperties.Warmup.class)
+                .orElseGet(MaskingProperties.Warmup::new);
+        List<Class<?>> types = MaskingWarmup.sensitiveTypes(
+                MaskingWarmupAutoConfiguration.packages(warmup, beanFactory), beanFactory.getBeanClassLoader());
+        if (types.isEmpty()) return null;
+        return (generationContext, code) -> {
+            ReflectionHints reflection = generationContext.getRuntimeHints().reflection();
+            for (Class<?> type : types) {
+                for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                    reflection.registerType(c, MemberCategory.DECLARED_FIELDS);
+                }
+            }
+        };
+    }
+}
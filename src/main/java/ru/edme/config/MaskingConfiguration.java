@@ -0,0 +1,141 @@
+package ru.edme.config;
+
+import jakarta.persistence.Column;
+import org.aspectj.lang.Aspects;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.edme.aspect.CallSiteRateLimiter;
+import ru.edme.aspect.LogInterceptorAspect;
+import ru.edme.custom.logger.MaskingLimits;
+import ru.edme.custom.logger.MaskingPlan;
+import ru.edme.custom.logger.SensitiveDataMasker;
+import ru.edme.jdbc.MaskingDataSource;
+import ru.edme.pattern.MaskingPattern;
+import ru.edme.pattern.MaskingPatternSet;
+import ru.edme.pattern.MaskingTimer;
+import ru.edme.web.MaskingBodyLoggingFilter;
+import ru.edme.web.MaskingScopeFilter;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+@Configuration
+@EnableConfigurationProperties(MaskingProperties.class)
+public class MaskingConfiguration {
+    
+    @Bean
+    public LogInterceptorAspect logInterceptorAspect(MaskingProperties properties,
+                                                     ObjectProvider<CallSiteRateLimiter> callSiteRateLimiter) {
+        LogInterceptorAspect aspect = Aspects.aspectOf(LogInterceptorAspect.class);
+        aspect.setMode(properties.getMode());
+        aspect.setScan(properties.isScan());
+        aspect.setRateLimiter(callSiteRateLimiter.getIfAvailable());
+        return aspect;
+    }
+    
+    // A bean of its own so that its summary thread is stopped, and the last summaries logged, on shutdown.
+    @Bean
+    @ConditionalOnProperty(prefix = "masking.rate-limit", name = "enabled", havingValue = "true")
+    public CallSiteRateLimiter callSiteRateLimiter(MaskingProperties properties) {
+        MaskingProperties.RateLimit rateLimit = properties.getRateLimit();
+        return new CallSiteRateLimiter(rateLimit.getEventsPerSecond(), rateLimit.getBurst(), rateLimit.getSummaryInterval());
+    }
+    
+    @Bean
+    public MaskingMetrics maskingMetrics(MaskingProperties properties) {
+        MaskingTimer.setSampleEvery(properties.getSampleEvery());
+        return new MaskingMetrics();
+    }
+    
+    @Bean
+    public MaskingEndpoint maskingEndpoint(LogInterceptorAspect logInterceptorAspect) {
+        return new MaskingEndpoint(logInterceptorAspect);
+    }
+    
+    @Bean
+    public MaskingRuleRegistry maskingRuleRegistry(Environment environment) {
+        return new MaskingRuleRegistry(environment);
+    }
+    
+    @Bean
+    public MaskingRulesEndpoint maskingRulesEndpoint(MaskingRuleRegistry maskingRuleRegistry) {
+        return new MaskingRulesEndpoint(maskingRuleRegistry);
+    }
+    
+    @Bean
+    public MaskingLimits maskingLimits(MaskingProperties properties) {
+        MaskingLimits limits = properties.toLimits();
+        SensitiveDataMasker.setLimits(limits);
+        return limits;
+    }
+    
+    @Bean
+    @ConditionalOnProperty(prefix = "masking.http", name = "enabled", havingValue = "true")
+    public MaskingBodyLoggingFilter maskingBodyLoggingFilter(MaskingProperties properties) {
+        MaskingProperties.Http http = properties.getHttp();
+        Map<String, MaskingPatternSet> rules =
+                rules(http.getSensitiveClasses(), http.getFields(), (type, field) -> field.name());
+        return new MaskingBodyLoggingFilter(rules, http.getMaxBodyChars());
+    }
+    
+    @Bean
+    @ConditionalOnProperty(prefix = "masking.memo", name = "enabled", havingValue = "true")
+    public MaskingScopeFilter maskingScopeFilter(MaskingProperties properties) {
+        return new MaskingScopeFilter(properties.getMemo().getMaxEntries());
+    }
+    
+    // Static, so that DataSource beans are wrapped however early they are created.
+    @Bean
+    @ConditionalOnProperty(prefix = "masking.jdbc", name = "enabled", havingValue = "true")
+    public static BeanPostProcessor maskingDataSourcePostProcessor(ObjectProvider<MaskingProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof MaskingDataSource) return bean;
+                MaskingProperties.Jdbc jdbc = properties.getObject().getJdbc();
+                Map<String, MaskingPatternSet> rules =
+                        rules(jdbc.getSensitiveClasses(), jdbc.getColumns(), MaskingConfiguration::columnName);
+                return new MaskingDataSource(dataSource, rules, jdbc.getSlowThreshold().toNanos(), jdbc.getSampleEvery());
+            }
+        };
+    }
+    
+    // The @SensitiveField rules of the given classes under the names chosen by naming, then the explicit rules.
+    private static Map<String, MaskingPatternSet> rules(List<Class<?>> sensitiveClasses,
+                                                        Map<String, List<MaskingPattern>> explicit,
+                                                        BiFunction<Class<?>, MaskingPlan.FieldPlan, String> naming) {
+        Map<String, MaskingPatternSet> rules = new LinkedHashMap<>();
+        for (Class<?> type : sensitiveClasses) {
+            for (MaskingPlan.FieldPlan field : MaskingPlan.of(type).fields()) {
+                if (field.isSensitive()) rules.put(naming.apply(type, field), field.patterns());
+            }
+        }
+        explicit.forEach((name, patterns) -> rules.put(name, MaskingPatternSet.of(patterns.toArray(MaskingPattern[]::new))));
+        return rules;
+    }
+    
+    // @Column(name = ...) if present, otherwise the snake_case of Spring Boot's default physical naming strategy.
+    private static String columnName(Class<?> type, MaskingPlan.FieldPlan plan) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(plan.name());
+                Column column = field.getAnnotation(Column.class);
+                if (column != null && !column.name().isEmpty()) return column.name().toLowerCase(Locale.ROOT);
+                break;
+            } catch (NoSuchFieldException e) {
+                // declared further up
+            }
+        }
+        return plan.name().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+    }
+}
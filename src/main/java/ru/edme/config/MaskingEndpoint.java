@@ -0,0 +1,50 @@
+package ru.edme.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import ru.edme.aspect.CallSiteRateLimiter;
+import ru.edme.aspect.LogInterceptorAspect;
+import ru.edme.custom.logger.MaskingStats;
+import ru.edme.pattern.MaskingTimer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/masking}: the current masking settings and counters. Timing can be switched at runtime with
+ * {@code POST /actuator/masking {"sampleEvery": 100}}; {@code 0} turns it off.
+ */
+@Endpoint(id = "masking")
+public class MaskingEndpoint {
+    private static final int TOP_SUPPRESSED_SITES = 10;
+    
+    private final LogInterceptorAspect aspect;
+    
+    public MaskingEndpoint(LogInterceptorAspect aspect) {
+        this.aspect = aspect;
+    }
+    
+    @ReadOperation
+    public Map<String, Object> masking() {
+        Map<String, Object> masking = new LinkedHashMap<>();
+        masking.put("mode", aspect.getMode());
+        masking.put("scan", aspect.isScan());
+        masking.put("sampleEvery", MaskingTimer.getSampleEvery());
+        CallSiteRateLimiter rateLimiter = aspect.getRateLimiter();
+        masking.put("rateLimit", rateLimiter != null ? rateLimiter.describe(TOP_SUPPRESSED_SITES) : "off");
+        masking.put("fallbacks", MaskingStats.fallbacks());
+        masking.put("circularRefs", MaskingStats.circularRefs());
+        masking.put("truncations", MaskingStats.truncations());
+        masking.put("accessErrors", MaskingStats.accessErrors());
+        masking.put("memoHits", MaskingStats.memoHits());
+        masking.put("memoMisses", MaskingStats.memoMisses());
+        return masking;
+    }
+    
+    @WriteOperation
+    public Map<String, Object> configure(int sampleEvery) {
+        MaskingTimer.setSampleEvery(sampleEvery);
+        return masking();
+    }
+}
@@ -0,0 +1,73 @@
+package ru.edme.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ru.edme.custom.logger.MaskingPlan;
+import ru.edme.custom.logger.MaskingStats;
+import ru.edme.pattern.MaskingPattern;
+import ru.edme.pattern.MaskingPatternSet;
+import ru.edme.pattern.MaskingTimer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes {@link MaskingStats}, the per-pattern timers and prefilter counters and the pattern set cache under
+ * {@code /actuator/metrics/masking.*}. The timers only count sampled calls, see {@link MaskingTimer}.
+ */
+public class MaskingMetrics implements MeterBinder {
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "masking.fallbacks", "Arguments rendered as [complex object]", s -> MaskingStats.fallbacks());
+        counter(registry, "masking.circular.refs", "References rendered as [circular-ref]", s -> MaskingStats.circularRefs());
+        counter(registry, "masking.truncations", "Objects or containers cut by the masking limits", s -> MaskingStats.truncations());
+        counter(registry, "masking.access.errors", "Fields rendered as [access-error]", s -> MaskingStats.accessErrors());
+        counter(registry, "masking.memo.hits", "Renderings reused within a masking scope", s -> MaskingStats.memoHits());
+        counter(registry, "masking.memo.misses", "Memoizable objects masked within a masking scope", s -> MaskingStats.memoMisses());
+        counter(registry, "masking.plans.built", "Classes inspected for sensitive fields", s -> MaskingPlan.plansBuilt());
+        counter(registry, "masking.pattern.cache.hits", "Pattern set cache hits", s -> MaskingPatternSet.cacheStats().hitCount());
+        counter(registry, "masking.pattern.cache.misses", "Pattern set cache misses", s -> MaskingPatternSet.cacheStats().missCount());
+        Gauge.builder("masking.pattern.cache.size", MaskingPatternSet::cacheSize)
+                .description("Compiled pattern sets")
+                .register(registry);
+        
+        for (MaskingPattern pattern : MaskingPattern.values()) {
+            timer(registry, "masking.pattern", "pattern", pattern.name(), pattern.timer());
+            FunctionCounter.builder("masking.prefilter.checks", pattern, MaskingPattern::prefilterChecks)
+                    .tag("pattern", pattern.name())
+                    .register(registry);
+            FunctionCounter.builder("masking.prefilter.rejections", pattern, MaskingPattern::prefilterRejections)
+                    .tag("pattern", pattern.name())
+                    .register(registry);
+        }
+        FunctionTimer.builder("masking.first.call", MaskingStats.firstCalls(), MaskingTimer::count, MaskingTimer::totalNanos,
+                        TimeUnit.NANOSECONDS)
+                .description("First masking call of each @SensitiveObject class")
+                .register(registry);
+        TimeGauge.builder("masking.first.call.max", MaskingStats.firstCalls(), TimeUnit.NANOSECONDS, MaskingTimer::maxNanos)
+                .register(registry);
+        // @SensitiveObject classes only; one masked earlier shows up with its next sampled call
+        MaskingStats.onNewClassTimer((type, timer) -> timer(registry, "masking.class", "class", type.getName(), timer));
+    }
+    
+    private static void counter(MeterRegistry registry, String name, String description, ToDoubleFunction<Object> count) {
+        FunctionCounter.builder(name, MaskingStats.class, count)
+                .description(description)
+                .register(registry);
+    }
+    
+    private static void timer(MeterRegistry registry, String name, String tag, String value, MaskingTimer timer) {
+        FunctionTimer.builder(name, timer, MaskingTimer::count, MaskingTimer::totalNanos, TimeUnit.NANOSECONDS)
+                .tag(tag, value)
+                .description("Sampled masking calls")
+                .register(registry);
+        TimeGauge.builder(name + ".max", timer, TimeUnit.NANOSECONDS, MaskingTimer::maxNanos)
+                .tag(tag, value)
+                .register(registry);
+    }
+}
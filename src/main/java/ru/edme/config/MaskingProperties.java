@@ -0,0 +1,93 @@
+package ru.edme.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import ru.edme.aspect.MaskingMode;
+import ru.edme.custom.logger.MaskingLimits;
+import ru.edme.custom.logger.MaskingScope;
+import ru.edme.pattern.MaskingPattern;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "masking")
+public class MaskingProperties {
+    private MaskingMode mode = MaskingMode.EAGER;
+    private boolean scan;
+    private int maxElements = MaskingLimits.DEFAULT.maxElements();
+    private int maxDepth = MaskingLimits.DEFAULT.maxDepth();
+    private int maxChars = MaskingLimits.DEFAULT.maxChars();
+    // time one masking call in this many; 0 switches timing off
+    private int sampleEvery;
+    private Http http = new Http();
+    private Jdbc jdbc = new Jdbc();
+    private Memo memo = new Memo();
+    private Warmup warmup = new Warmup();
+    private RateLimit rateLimit = new RateLimit();
+    // name -> rule for @SensitiveField(rules = ...), e.g. masking.rules.CARD.regex=(\\d{4})\\d{8}(\\d{4})
+    private Map<String, Rule> rules = new LinkedHashMap<>();
+    // YAML file with more rules under a top-level "rules" key, e.g. file:/etc/app/masking-rules.yml
+    private Resource rulesFile;
+    
+    public MaskingLimits toLimits() {
+        return new MaskingLimits(maxElements, maxDepth, maxChars);
+    }
+    
+    @Data
+    public static class Http {
+        private boolean enabled;
+        private int maxBodyChars = 4096;
+        // field name or JSON Pointer -> patterns, e.g. masking.http.fields.phone=PHONE
+        private Map<String, List<MaskingPattern>> fields = new LinkedHashMap<>();
+        // @SensitiveObject classes whose @SensitiveField names are masked as well
+        private List<Class<?>> sensitiveClasses = new ArrayList<>();
+    }
+    
+    @Data
+    public static class Jdbc {
+        private boolean enabled;
+        // statements at least this slow are always logged
+        private Duration slowThreshold = Duration.ofMillis(100);
+        // log one faster statement in this many; 0 logs slow statements only
+        private int sampleEvery;
+        // column name -> patterns, e.g. masking.jdbc.columns.phone=PHONE
+        private Map<String, List<MaskingPattern>> columns = new LinkedHashMap<>();
+        // @SensitiveObject classes whose @SensitiveField columns are masked as well
+        private List<Class<?>> sensitiveClasses = new ArrayList<>();
+    }
+    
+    @Data
+    public static class Memo {
+        private boolean enabled;
+        // objects remembered per request
+        private int maxEntries = MaskingScope.DEFAULT_MAX_ENTRIES;
+    }
+    
+    @Data
+    public static class Warmup {
+        private boolean enabled = true;
+        // packages scanned for @SensitiveObject classes; the application's packages if empty
+        private List<String> packages = new ArrayList<>();
+    }
+    
+    @Data
+    public static class RateLimit {
+        private boolean enabled;
+        // per logger call site
+        private double eventsPerSecond = 50;
+        private int burst = 100;
+        private Duration summaryInterval = Duration.ofSeconds(10);
+    }
+    
+    @Data
+    public static class Rule {
+        private String regex;
+        // $n inserts group n of the regex
+        private String replacement = "";
+    }
+}
@@ -0,0 +1,96 @@
+package ru.edme.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import ru.edme.pattern.MaskingRule;
+import ru.edme.pattern.MaskingRules;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the configured masking rules, {@code masking.rules.*} and the YAML file at {@code masking.rules-file}, and
+ * publishes them as the current {@link MaskingRules}. On a reload both are read again, the YAML file from disk and
+ * the properties from the {@link Environment} as it is now; rules in the file override properties of the same name.
+ * <p>
+ * The startup load runs inline and fails the context on a bad rule, so no log line is masked with a half-configured
+ * engine. Reloads are compiled on a single background thread and published with one swap once every rule has
+ * compiled; a reload that fails leaves the rules in use untouched.
+ */
+@Slf4j
+public class MaskingRuleRegistry implements InitializingBean, DisposableBean {
+    private static final Bindable<Map<String, MaskingProperties.Rule>> RULES =
+            Bindable.mapOf(String.class, MaskingProperties.Rule.class);
+    
+    private final Environment environment;
+    private final ExecutorService compiler = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "masking-rules");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public MaskingRuleRegistry(Environment environment) {
+        this.environment = environment;
+    }
+    
+    @Override
+    public void afterPropertiesSet() {
+        publish(compile());
+    }
+    
+    @Override
+    public void destroy() {
+        compiler.shutdownNow();
+    }
+    
+    public CompletableFuture<MaskingRules> reload() {
+        return CompletableFuture.supplyAsync(this::compile, compiler)
+                .thenApply(this::publish)
+                .whenComplete((rules, e) -> {
+                    if (e != null) log.warn("Masking rules not reloaded, keeping version {}", MaskingRules.current().version(), e);
+                });
+    }
+    
+    private MaskingRules publish(MaskingRules rules) {
+        MaskingRules.publish(rules);
+        log.info("Masking rules version {} published: {} configured", rules.version(),
+                rules.rules().values().stream().filter(rule -> !rule.isBuiltIn()).count());
+        return rules;
+    }
+    
+    private MaskingRules compile() {
+        List<MaskingRule> rules = new ArrayList<>();
+        definitions().forEach((name, rule) -> rules.add(MaskingRule.compile(name, rule.getRegex(), rule.getReplacement())));
+        return MaskingRules.of(rules);
+    }
+    
+    private Map<String, MaskingProperties.Rule> definitions() {
+        MaskingProperties properties = Binder.get(environment).bindOrCreate("masking", MaskingProperties.class);
+        Map<String, MaskingProperties.Rule> definitions = new LinkedHashMap<>(properties.getRules());
+        Resource file = properties.getRulesFile();
+        if (file != null) definitions.putAll(load(file));
+        return definitions;
+    }
+    
+    private static Map<String, MaskingProperties.Rule> load(Resource file) {
+        if (!file.exists()) throw new IllegalStateException("Masking rules file not found: " + file);
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(file);
+        Properties properties = yaml.getObject();
+        if (properties == null) return Map.of();
+        return new Binder(new MapConfigurationPropertySource(properties)).bind("rules", RULES).orElseGet(Map::of);
+    }
+}
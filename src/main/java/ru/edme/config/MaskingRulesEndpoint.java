@@ -0,0 +1,54 @@
+package ru.edme.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import ru.edme.pattern.MaskingRule;
+import ru.edme.pattern.MaskingRules;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@code /actuator/maskingrules}: the masking rules in use. {@code POST /actuator/maskingrules} reloads them and
+ * answers once the new rules are published, or with the error that kept them from it.
+ */
+@Endpoint(id = "maskingrules")
+public class MaskingRulesEndpoint {
+    private final MaskingRuleRegistry registry;
+    
+    public MaskingRulesEndpoint(MaskingRuleRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @ReadOperation
+    public Map<String, Object> rules() {
+        MaskingRules current = MaskingRules.current();
+        Map<String, Object> rules = new LinkedHashMap<>();
+        for (MaskingRule rule : current.rules().values()) {
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("builtIn", rule.isBuiltIn());
+            description.put("regex", rule.regex());
+            if (!rule.isBuiltIn()) description.put("replacement", rule.replacement());
+            rules.put(rule.name(), description);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", current.version());
+        result.put("rules", rules);
+        return result;
+    }
+    
+    @WriteOperation
+    public Map<String, Object> reload() {
+        try {
+            registry.reload().join();
+            return rules();
+        } catch (CompletionException e) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("version", MaskingRules.current().version());
+            result.put("error", String.valueOf(e.getCause().getMessage()));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.edme.config;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+/**
+ * What masking looks up reflectively that a native image cannot see on its own: the generated maskers found with
+ * {@link java.util.ServiceLoader} and the {@code aspectOf} that {@code Aspects.aspectOf} calls on the woven
+ * {@code LogInterceptorAspect}. The fields of the {@code @SensitiveObject} classes are registered by
+ * {@link MaskingAotProcessor}.
+ */
+public class MaskingRuntimeHints implements RuntimeHintsRegistrar {
+    
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources().registerPattern("META-INF/services/ru.edme.custom.logger.ObjectMasker");
+        hints.reflection().registerType(TypeReference.of("ru.edme.aspect.LogInterceptorAspect"),
+                MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.edme.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ClassUtils;
+import ru.edme.annotation.SensitiveObject;
+import ru.edme.custom.logger.SensitiveDataMasker;
+import ru.edme.pattern.MaskingPattern;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares masking while the rest of the context starts, so the first requests after a deploy do not pay for it:
+ * finds the {@code @SensitiveObject} classes in the given packages, builds their field plans and compiled pattern
+ * sets in parallel, and runs every {@link MaskingPattern} once. All of it happens on the common pool; startup only
+ * waits for the submission.
+ */
+@Slf4j
+public class MaskingWarmup implements InitializingBean, MeterBinder {
+    // one value of every shape the patterns know
+    static final String SAMPLE = "Иванов Иван Иванович, +7(912)345-67-89, ivan.ivanov@mail.ru, 123-456-789-01, "
+            + "ИНН 7707083893, 500100732259, паспорт 4510 123456, код 770-001, 17.05.1990, 1990-05-17, "
+            + "г. Москва, ул. Ленина, д. 1, кв. 2, 101000, выдан ГУ МВД России";
+    
+    private final Collection<String> packages;
+    private final ClassLoader classLoader;
+    private volatile CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile long durationNanos;
+    private volatile int classes;
+    
+    public MaskingWarmup(Collection<String> packages, ClassLoader classLoader) {
+        this.packages = List.copyOf(packages);
+        this.classLoader = classLoader;
+    }
+    
+    @Override
+    public void afterPropertiesSet() {
+        completion = CompletableFuture.runAsync(this::warmUp);
+    }
+    
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        TimeGauge.builder("masking.warmup.duration", this, TimeUnit.NANOSECONDS, warmup -> warmup.durationNanos)
+                .description("Time the startup warmup took, off the main thread")
+                .register(registry);
+        Gauge.builder("masking.warmup.classes", this, warmup -> warmup.classes)
+                .description("@SensitiveObject classes prepared at startup")
+                .register(registry);
+    }
+    
+    static List<Class<?>> sensitiveTypes(Collection<String> packages, ClassLoader classLoader) {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(SensitiveObject.class));
+        List<Class<?>> types = new ArrayList<>();
+        for (String basePackage : packages) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                types.add(ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader));
+            }
+        }
+        return types;
+    }
+    
+    private void warmUp() {
+        long start = System.nanoTime();
+        try {
+            List<Class<?>> types = sensitiveTypes(packages, classLoader);
+            types.parallelStream().forEach(SensitiveDataMasker::prepare);
+            for (MaskingPattern pattern : MaskingPattern.values()) pattern.applyTo(SAMPLE);
+            classes = types.size();
+        } catch (RuntimeException | LinkageError e) {
+            log.warn("Masking warmup failed, masking metadata will be built on first use", e);
+        } finally {
+            durationNanos = System.nanoTime() - start;
+        }
+        log.debug("Masking warmup prepared {} classes in {} ms", classes, durationNanos / 1_000_000);
+    }
+}
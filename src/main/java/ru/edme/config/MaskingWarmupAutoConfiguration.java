@@ -0,0 +1,29 @@
+package ru.edme.config;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+import java.util.List;
+
+@AutoConfiguration
+@EnableConfigurationProperties(MaskingProperties.class)
+@ConditionalOnProperty(prefix = "masking.warmup", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class MaskingWarmupAutoConfiguration {
+    
+    @Bean
+    @ConditionalOnMissingBean
+    public MaskingWarmup maskingWarmup(MaskingProperties properties, BeanFactory beanFactory) {
+        return new MaskingWarmup(packages(properties.getWarmup(), beanFactory), MaskingWarmup.class.getClassLoader());
+    }
+    
+    // The packages scanned for @SensitiveObject classes, for the warmup and for the native image hints alike.
+    static List<String> packages(MaskingProperties.Warmup warmup, BeanFactory beanFactory) {
+        if (!warmup.getPackages().isEmpty()) return warmup.getPackages();
+        return AutoConfigurationPackages.has(beanFactory) ? AutoConfigurationPackages.get(beanFactory) : List.of();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.edme.custom.logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Masks large numbers of objects for exports and dumps, one line per object in input order. The input is cut into
+ * batches that are masked in parallel on a {@link ForkJoinPool}; each worker renders into its own reused buffer.
+ * At most {@code maxPendingBatches} batches are in flight, so a slow sink holds the reader back instead of the
+ * masked output piling up in memory.
+ */
+public final class BulkMasker {
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+    
+    private final ForkJoinPool pool;
+    private final int batchSize;
+    private final int maxPendingBatches;
+    
+    public BulkMasker() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE, 2 * ForkJoinPool.commonPool().getParallelism());
+    }
+    
+    public BulkMasker(ForkJoinPool pool, int batchSize, int maxPendingBatches) {
+        if (pool == null) throw new IllegalArgumentException("pool must not be null");
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        if (maxPendingBatches < 1) throw new IllegalArgumentException("maxPendingBatches must be positive: " + maxPendingBatches);
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.maxPendingBatches = maxPendingBatches;
+    }
+    
+    public long maskTo(Stream<?> objects, Writer out) throws IOException {
+        return maskTo(objects.iterator(), out);
+    }
+    
+    public long maskTo(Iterable<?> objects, Writer out) throws IOException {
+        return maskTo(objects.iterator(), out);
+    }
+    
+    // The stream is flushed but left open; it belongs to the caller.
+    public long maskTo(Iterable<?> objects, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        long count = maskTo(objects.iterator(), writer);
+        writer.flush();
+        return count;
+    }
+    
+    public long maskTo(Stream<?> objects, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        long count = maskTo(objects.iterator(), writer);
+        writer.flush();
+        return count;
+    }
+    
+    private long maskTo(Iterator<?> objects, Writer out) throws IOException {
+        Deque<ForkJoinTask<String>> pending = new ArrayDeque<>(maxPendingBatches);
+        long count = 0;
+        try {
+            while (objects.hasNext()) {
+                Object[] batch = new Object[batchSize];
+                int size = 0;
+                while (size < batchSize && objects.hasNext()) batch[size++] = objects.next();
+                count += size;
+                
+                if (pending.size() == maxPendingBatches) out.write(pending.removeFirst().join());
+                int batchLength = size;
+                pending.addLast(pool.submit(() -> maskBatch(batch, batchLength)));
+            }
+            while (!pending.isEmpty()) out.write(pending.removeFirst().join());
+        } finally {
+            for (ForkJoinTask<String> task : pending) task.cancel(false);
+        }
+        return count;
+    }
+    
+    private static String maskBatch(Object[] batch, int size) {
+        StringBuilder buffer = BUFFERS.get();
+        buffer.setLength(0);
+        for (int i = 0; i < size; i++) {
+            SensitiveDataMasker.maskTo(batch[i], buffer);
+            buffer.append('\n');
+        }
+        String masked = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) BUFFERS.remove();
+        return masked;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.edme.custom.logger;
+
+import java.time.LocalDate;
+import java.util.IdentityHashMap;
+
+/**
+ * Logging argument whose masking is left to {@link MaskingMessageConverter} at layout time. Only a snapshot of
+ * the value is taken on the calling thread; {@link #toString()} deliberately prints a placeholder, because
+ * {@code AsyncAppender} formats the plain message on the calling thread before handing the event over.
+ */
+public final class DeferredMasked {
+    private final Object snapshot;
+    
+    private DeferredMasked(Object snapshot) {
+        this.snapshot = snapshot;
+    }
+    
+    public static Object deferred(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof LocalDate || value instanceof Throwable) {
+            return value;
+        }
+        Object snapshot = Snapshot.capture(value, new IdentityHashMap<>());
+        return snapshot == value ? value : new DeferredMasked(snapshot);
+    }
+    
+    public void maskTo(StringBuilder out) {
+        SensitiveDataMasker.maskTo(snapshot, out);
+    }
+    
+    public String mask() {
+        StringBuilder result = new StringBuilder();
+        maskTo(result);
+        return result.toString();
+    }
+    
+    @Override
+    public String toString() {
+        return snapshot instanceof Snapshot ? snapshot.toString() : "[deferred]";
+    }
+}
@@ -0,0 +1,85 @@
+package ru.edme.custom.logger;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+/**
+ * Log arguments rendered as JSON with their sensitive fields masked by {@link MaskingModule}, for pipelines that
+ * parse structured messages. Uses its own mapper, so the application's JSON is left alone. Objects are serialized
+ * through their fields, not their getters, so the JSON holds the same values that {@link SensitiveDataMasker}
+ * renders. Output stops at {@link MaskingLimits#maxChars()} and then is no longer valid JSON.
+ */
+public final class JsonMasked {
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .addModule(new MaskingModule())
+            .visibility(PropertyAccessor.ALL, Visibility.NONE)
+            .visibility(PropertyAccessor.FIELD, Visibility.ANY)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+            .build();
+    
+    private JsonMasked() {
+    }
+    
+    public static Object json(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof LocalDate || value instanceof Throwable) {
+            return value;
+        }
+        CappedWriter out = new CappedWriter(SensitiveDataMasker.getLimits().maxChars());
+        try {
+            MAPPER.writeValue(out, value);
+            return out.text.toString();
+        } catch (Exception e) {
+            // the writer's exception, possibly wrapped; a cyclic graph ends here too
+            if (out.isFull()) {
+                MaskingStats.truncation();
+                return out.text + "...(truncated)";
+            }
+            MaskingStats.fallback();
+            return "[complex object]";
+        }
+    }
+    
+    // Stops the serialization by throwing once maxChars are written.
+    private static final class CappedWriter extends Writer {
+        private final StringBuilder text = new StringBuilder();
+        private final int maxChars;
+        private boolean full;
+        
+        private CappedWriter(int maxChars) {
+            this.maxChars = maxChars;
+        }
+        
+        boolean isFull() {
+            return full;
+        }
+        
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            int room = maxChars - text.length();
+            text.append(chars, offset, Math.min(length, room));
+            if (length > room) {
+                full = true;
+                throw new IOException("maxChars reached");
+            }
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
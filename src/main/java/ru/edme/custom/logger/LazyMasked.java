@@ -0,0 +1,30 @@
+package ru.edme.custom.logger;
+
+import static ru.edme.custom.logger.SensitiveDataMasker.mask;
+
+public final class LazyMasked {
+    private final Object value;
+    private String masked;
+    
+    private LazyMasked(Object value) {
+        this.value = value;
+    }
+    
+    public static Object lazy(Object value) {
+        if (value == null || value instanceof String || value instanceof Number
+                || value instanceof Boolean || value instanceof Character || value instanceof Throwable) {
+            return value;
+        }
+        return new LazyMasked(value);
+    }
+    
+    @Override
+    public String toString() {
+        String result = masked;
+        if (result == null) {
+            result = String.valueOf(mask(value));
+            masked = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.edme.custom.logger;
+
+/**
+ * Budgets for masking one logging argument: elements shown per collection, map or array, nesting depth, and
+ * output characters after which no further elements are rendered and a value crossing it is cut. The budgets apply
+ * to each argument on its own, not to the whole log line.
+ */
+public record MaskingLimits(int maxElements, int maxDepth, int maxChars) {
+    public static final MaskingLimits DEFAULT = new MaskingLimits(50, 8, 8192);
+    
+    public MaskingLimits {
+        if (maxElements < 0 || maxDepth < 1 || maxChars < 0) {
+            throw new IllegalArgumentException("Invalid masking limits: maxElements=" + maxElements
+                    + ", maxDepth=" + maxDepth + ", maxChars=" + maxChars);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.edme.custom.logger;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.slf4j.helpers.MessageFormatter;
+import ru.edme.pattern.PiiScanner;
+
+/**
+ * {@code %maskedMsg}: the formatted message with every {@link DeferredMasked} argument masked. Runs wherever the
+ * layout runs, i.e. on the worker thread behind an {@code AsyncAppender} (the {@code async-logging} profile of
+ * logback-spring.xml) and on the calling thread otherwise. Events without deferred arguments are rendered exactly
+ * like {@code %msg}. With {@code %maskedMsg{scan}} the whole formatted message additionally goes
+ * through {@link PiiScanner}, which also catches identifiers logged by code the aspect never sees.
+ */
+public class MaskingMessageConverter extends ClassicConverter {
+    private boolean scan;
+    
+    @Override
+    public void start() {
+        scan = "scan".equals(getFirstOption());
+        super.start();
+    }
+    
+    @Override
+    public String convert(ILoggingEvent event) {
+        String message = format(event);
+        return scan ? PiiScanner.scan(message) : message;
+    }
+    
+    private static String format(ILoggingEvent event) {
+        Object[] args = event.getArgumentArray();
+        if (!hasDeferred(args)) return event.getFormattedMessage();
+        Object[] masked = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            masked[i] = args[i] instanceof DeferredMasked deferred ? deferred.mask() : args[i];
+        }
+        return MessageFormatter.arrayFormat(event.getMessage(), masked).getMessage();
+    }
+    
+    private static boolean hasDeferred(Object[] args) {
+        if (args == null) return false;
+        for (Object arg : args) {
+            if (arg instanceof DeferredMasked) return true;
+        }
+        return false;
+    }
+}
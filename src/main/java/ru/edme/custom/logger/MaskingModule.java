@@ -0,0 +1,131 @@
+package ru.edme.custom.logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.edme.annotation.SensitiveField;
+import ru.edme.annotation.SensitiveObject;
+import ru.edme.pattern.MaskingPatternSet;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Masks the {@code @SensitiveField}s of {@code @SensitiveObject} classes when Jackson serializes them. The masking
+ * serializers are attached once per class, when Jackson builds its bean serializer, and write every masked value
+ * to the generator from a per-thread buffer without creating a String for it. Meant for a dedicated log mapper
+ * (see {@link JsonMasked}); registering it on the application's mapper would mask API responses as well.
+ * <p>
+ * Containers in sensitive fields show at most {@link MaskingLimits#maxElements()} elements, like on the
+ * {@link SensitiveDataMasker} path.
+ */
+public class MaskingModule extends SimpleModule {
+    
+    public MaskingModule() {
+        super("MaskingModule");
+        setSerializerModifier(new MaskingSerializerModifier());
+    }
+    
+    private static final class MaskingSerializerModifier extends BeanSerializerModifier {
+        @Override
+        public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc,
+                                                         List<BeanPropertyWriter> beanProperties) {
+            if (!beanDesc.getBeanClass().isAnnotationPresent(SensitiveObject.class)) return beanProperties;
+            for (BeanPropertyWriter writer : beanProperties) {
+                SensitiveField field = writer.getAnnotation(SensitiveField.class);
+                if (field == null || writer.hasSerializer()) continue;
+                MaskingPatternSet patterns = MaskingPatternSet.of(field.patterns(), field.rules());
+                if (!patterns.isEmpty()) writer.assignSerializer(new MaskedValueSerializer(patterns));
+            }
+            return beanProperties;
+        }
+    }
+    
+    // Strings and dates are masked; collections, arrays, primitive ones included, and map values are masked element
+    // by element, like SensitiveDataMasker does; anything else is serialized as usual.
+    private static final class MaskedValueSerializer extends StdSerializer<Object> {
+        private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+        
+        private final MaskingPatternSet patterns;
+        
+        private MaskedValueSerializer(MaskingPatternSet patterns) {
+            super(Object.class);
+            this.patterns = patterns;
+        }
+        
+        @Override
+        public void serialize(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            int maxElements = SensitiveDataMasker.getLimits().maxElements();
+            int shown = 0;
+            if (value instanceof Collection<?> collection) {
+                gen.writeStartArray();
+                for (Iterator<?> it = collection.iterator(); it.hasNext() && shown < maxElements; shown++) {
+                    writeElement(it.next(), gen, provider);
+                }
+                writeRemainder(collection.size() - shown, gen);
+                gen.writeEndArray();
+            } else if (value != null && value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                gen.writeStartArray();
+                for (; shown < length && shown < maxElements; shown++) writeElement(Array.get(value, shown), gen, provider);
+                writeRemainder(length - shown, gen);
+                gen.writeEndArray();
+            } else if (value instanceof Map<?, ?> map) {
+                gen.writeStartObject();
+                for (Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator(); it.hasNext() && shown < maxElements; shown++) {
+                    Map.Entry<?, ?> entry = it.next();
+                    gen.writeFieldName(String.valueOf(entry.getKey()));
+                    writeElement(entry.getValue(), gen, provider);
+                }
+                if (map.size() > shown) gen.writeStringField("...", "(+" + (map.size() - shown) + " more)");
+                gen.writeEndObject();
+            } else {
+                writeElement(value, gen, provider);
+            }
+        }
+        
+        private static void writeRemainder(int remaining, JsonGenerator gen) throws IOException {
+            if (remaining > 0) gen.writeString("...(+" + remaining + " more)");
+        }
+        
+        private void writeElement(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (value == null) {
+                gen.writeNull();
+            } else if (value instanceof CharSequence || value instanceof LocalDate) {
+                Buffer buffer = BUFFERS.get();
+                StringBuilder masked = buffer.masked;
+                masked.setLength(0);
+                if (value instanceof LocalDate date) {
+                    patterns.applyTo(date, masked);
+                } else {
+                    patterns.applyTo((CharSequence) value, masked);
+                }
+                gen.writeString(buffer.chars(), 0, masked.length());
+            } else {
+                provider.defaultSerializeValue(value, gen);
+            }
+        }
+    }
+    
+    private static final class Buffer {
+        private final StringBuilder masked = new StringBuilder(256);
+        private char[] chars = new char[256];
+        
+        char[] chars() {
+            int length = masked.length();
+            if (chars.length < length) chars = new char[Math.max(length, 2 * chars.length)];
+            masked.getChars(0, length, chars, 0);
+            return chars;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ru.edme.custom.logger;
+
+import ru.edme.annotation.SensitiveField;
+import ru.edme.annotation.SensitiveObject;
+import ru.edme.pattern.MaskingPatternSet;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.invoke.MethodType.methodType;
+
+public final class MaskingPlan {
+    private static final MaskingPlan NOT_SENSITIVE = new MaskingPlan(null, new FieldPlan[0]);
+    private static final LongAdder PLANS_BUILT = new LongAdder();
+    private static final ClassValue<MaskingPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected MaskingPlan computeValue(Class<?> type) {
+            PLANS_BUILT.increment();
+            return type.isAnnotationPresent(SensitiveObject.class) ? build(type) : NOT_SENSITIVE;
+        }
+    };
+
+    private final String simpleName;
+    private final FieldPlan[] fields;
+
+    private MaskingPlan(String simpleName, FieldPlan[] fields) {
+        this.simpleName = simpleName;
+        this.fields = fields;
+    }
+
+    public static MaskingPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    // Misses of the per-class plan cache; a ClassValue does not count its hits.
+    public static long plansBuilt() {
+        return PLANS_BUILT.sum();
+    }
+
+    public boolean isSensitiveObject() {
+        return this != NOT_SENSITIVE;
+    }
+
+    public String simpleName() {
+        return simpleName;
+    }
+
+    public FieldPlan[] fields() {
+        return fields;
+    }
+
+    private static MaskingPlan build(Class<?> type) {
+        Deque<Class<?>> hierarchy = new ArrayDeque<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) hierarchy.push(c);
+        List<FieldPlan> fields = new ArrayList<>();
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) continue;
+                fields.add(FieldPlan.of(field));
+            }
+        }
+        return new MaskingPlan(type.getSimpleName(), fields.toArray(FieldPlan[]::new));
+    }
+
+    public enum ValueKind {
+        SIMPLE,
+        DATE,
+        COLLECTION,
+        OBJECT;
+
+        private static final Set<Class<?>> SIMPLE_TYPES = Set.of(
+                String.class, Boolean.class, Character.class, Byte.class, Short.class,
+                Integer.class, Long.class, Float.class, Double.class
+        );
+
+        static ValueKind of(Class<?> type) {
+            if (type.isPrimitive() || SIMPLE_TYPES.contains(type)) return SIMPLE;
+            if (type == LocalDate.class) return DATE;
+            if (type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+                return COLLECTION;
+            }
+            return OBJECT;
+        }
+    }
+
+    public static final class FieldPlan {
+        private final String name;
+        private final MethodHandle getter;
+        private final boolean sensitive;
+        private final MaskingPatternSet patterns;
+        private final ValueKind kind;
+
+        private FieldPlan(String name, MethodHandle getter, boolean sensitive, MaskingPatternSet patterns, ValueKind kind) {
+            this.name = name;
+            this.getter = getter;
+            this.sensitive = sensitive;
+            this.patterns = patterns;
+            this.kind = kind;
+        }
+
+        static FieldPlan of(Field field) {
+            SensitiveField annotation = field.getAnnotation(SensitiveField.class);
+            return new FieldPlan(
+                    field.getName(),
+                    getter(field),
+                    annotation != null,
+                    annotation != null ? MaskingPatternSet.of(annotation.patterns(), annotation.rules()) : MaskingPatternSet.of(),
+                    ValueKind.of(field.getType()));
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public boolean isSensitive() {
+            return sensitive;
+        }
+
+        public MaskingPatternSet patterns() {
+            return patterns;
+        }
+
+        public ValueKind kind() {
+            return kind;
+        }
+
+        public Object get(Object target) throws Throwable {
+            if (getter == null) throw new IllegalAccessException("No accessible getter for field " + name);
+            return (Object) getter.invokeExact(target);
+        }
+
+        private static MethodHandle getter(Field field) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+                return lookup.unreflectGetter(field).asType(methodType(Object.class, Object.class));
+            } catch (IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
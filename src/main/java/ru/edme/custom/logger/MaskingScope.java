@@ -0,0 +1,119 @@
+package ru.edme.custom.logger;
+
+import ru.edme.custom.logger.MaskingPlan.FieldPlan;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers masked renderings for the length of a unit of work, typically a request:
+ * <pre>
+ * try (MaskingScope scope = MaskingScope.open()) {
+ *     ...
+ * }
+ * </pre>
+ * Within the scope, a {@code @SensitiveObject} instance that is masked again with the same field values gets its
+ * earlier rendering back without another walk. Whether the values are the same is checked with a hash over them.
+ * That is only possible when every value is immutable (strings, boxed numbers, enums, {@code java.time} values) or
+ * a nested object of the same kind. Instances holding anything else, collections for example, are masked every time.
+ * <p>
+ * The memo is per thread, so it works the same on platform and virtual threads and renderings never cross threads.
+ * It holds at most {@code maxEntries} instances and is cleared on {@link #close()}, so nothing outlives the scope.
+ * A nested {@link #open()} joins the scope already open on the thread.
+ */
+public final class MaskingScope implements AutoCloseable {
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    static final long NOT_MEMOIZABLE = Long.MIN_VALUE;
+    private static final int MAX_STAMP_DEPTH = 4;
+    private static final ThreadLocal<MaskingScope> CURRENT = new ThreadLocal<>();
+    private static final MaskingScope NESTED = new MaskingScope(0);
+    
+    private final Map<Object, Memo> memos = new IdentityHashMap<>();
+    private final int maxEntries;
+    
+    private MaskingScope(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+    
+    public static MaskingScope open() {
+        return open(DEFAULT_MAX_ENTRIES);
+    }
+    
+    public static MaskingScope open(int maxEntries) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        if (CURRENT.get() != null) return NESTED;
+        MaskingScope scope = new MaskingScope(maxEntries);
+        CURRENT.set(scope);
+        return scope;
+    }
+    
+    @Override
+    public void close() {
+        if (this == NESTED) return;
+        memos.clear();
+        if (CURRENT.get() == this) CURRENT.remove();
+    }
+    
+    static MaskingScope current() {
+        return CURRENT.get();
+    }
+    
+    String get(Object obj, long stamp) {
+        Memo memo = memos.get(obj);
+        if (memo != null && memo.stamp() == stamp) {
+            MaskingStats.memoHit();
+            return memo.rendering();
+        }
+        MaskingStats.memoMiss();
+        return null;
+    }
+    
+    void put(Object obj, long stamp, String rendering) {
+        if (memos.size() < maxEntries || memos.containsKey(obj)) memos.put(obj, new Memo(stamp, rendering));
+    }
+    
+    // A hash of the object's field values, or NOT_MEMOIZABLE.
+    static long stamp(Object obj) {
+        MaskingPlan plan = MaskingPlan.of(obj.getClass());
+        if (!plan.isSensitiveObject()) return NOT_MEMOIZABLE;
+        try {
+            return stamp(plan, obj, 0);
+        } catch (Throwable e) {
+            return NOT_MEMOIZABLE;
+        }
+    }
+    
+    private static long stamp(MaskingPlan plan, Object obj, int depth) throws Throwable {
+        long stamp = obj.getClass().hashCode();
+        for (FieldPlan field : plan.fields()) {
+            Object value = field.get(obj);
+            long hash;
+            if (value == null) {
+                hash = 0;
+            } else if (isImmutable(value)) {
+                hash = value.hashCode();
+            } else {
+                MaskingPlan nested = MaskingPlan.of(value.getClass());
+                if (depth == MAX_STAMP_DEPTH || !nested.isSensitiveObject()) return NOT_MEMOIZABLE;
+                hash = stamp(nested, value, depth + 1);
+                if (hash == NOT_MEMOIZABLE) return NOT_MEMOIZABLE;
+            }
+            stamp = stamp * 0x9E3779B97F4A7C15L + hash;
+        }
+        return stamp == NOT_MEMOIZABLE ? NOT_MEMOIZABLE + 1 : stamp;
+    }
+    
+    private static boolean isImmutable(Object value) {
+        Class<?> type = value.getClass();
+        return value instanceof String || value instanceof Enum<?> || type == Boolean.class || type == Character.class
+                || type == Byte.class || type == Short.class || type == Integer.class || type == Long.class
+                || type == Float.class || type == Double.class || type == BigDecimal.class || type == BigInteger.class
+                || type == UUID.class || type.getName().startsWith("java.time.");
+    }
+    
+    private record Memo(long stamp, String rendering) {
+    }
+}
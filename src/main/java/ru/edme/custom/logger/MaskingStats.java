@@ -0,0 +1,122 @@
+package ru.edme.custom.logger;
+
+import ru.edme.pattern.MaskingTimer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * What masking has been doing: how often it fell back to a placeholder, and sampled timings of whole objects by
+ * class. Nothing here depends on a metrics library; {@code MaskingMetrics} publishes it to Micrometer.
+ * <p>
+ * Per-class timings are kept for {@code @SensitiveObject} classes only, so their number is bounded by the model and
+ * not by whatever else gets logged. They hang off the class through a {@link ClassValue} and do not keep it loaded.
+ */
+public final class MaskingStats {
+    private static final LongAdder FALLBACKS = new LongAdder();
+    private static final LongAdder CIRCULAR_REFS = new LongAdder();
+    private static final LongAdder TRUNCATIONS = new LongAdder();
+    private static final LongAdder ACCESS_ERRORS = new LongAdder();
+    private static final LongAdder MEMO_HITS = new LongAdder();
+    private static final LongAdder MEMO_MISSES = new LongAdder();
+    private static final MaskingTimer FIRST_CALLS = new MaskingTimer();
+    // null for classes that are not @SensitiveObjects
+    private static final ClassValue<ClassStats> CLASSES = new ClassValue<>() {
+        @Override
+        protected ClassStats computeValue(Class<?> type) {
+            return MaskingPlan.of(type).isSensitiveObject() ? new ClassStats() : null;
+        }
+    };
+    private static volatile BiConsumer<Class<?>, MaskingTimer> classTimerListener;
+    
+    private MaskingStats() {
+    }
+    
+    // "[complex object]": masking an argument threw
+    public static long fallbacks() {
+        return FALLBACKS.sum();
+    }
+    
+    public static long circularRefs() {
+        return CIRCULAR_REFS.sum();
+    }
+    
+    // "[max-depth]" or "...(+N more)"
+    public static long truncations() {
+        return TRUNCATIONS.sum();
+    }
+    
+    public static long accessErrors() {
+        return ACCESS_ERRORS.sum();
+    }
+    
+    // renderings reused from a MaskingScope
+    public static long memoHits() {
+        return MEMO_HITS.sum();
+    }
+    
+    public static long memoMisses() {
+        return MEMO_MISSES.sum();
+    }
+    
+    // The first masking call of each @SensitiveObject class, timed always: this is where a missing warmup shows.
+    public static MaskingTimer firstCalls() {
+        return FIRST_CALLS;
+    }
+    
+    // Called once for every @SensitiveObject class, on its first timed call after the listener is set.
+    public static void onNewClassTimer(BiConsumer<Class<?>, MaskingTimer> listener) {
+        classTimerListener = listener;
+    }
+    
+    static void fallback() {
+        FALLBACKS.increment();
+    }
+    
+    static void circularRef() {
+        CIRCULAR_REFS.increment();
+    }
+    
+    static void truncation() {
+        TRUNCATIONS.increment();
+    }
+    
+    static void accessError() {
+        ACCESS_ERRORS.increment();
+    }
+    
+    static void memoHit() {
+        MEMO_HITS.increment();
+    }
+    
+    static void memoMiss() {
+        MEMO_MISSES.increment();
+    }
+    
+    static boolean isFirstCall(Class<?> type) {
+        ClassStats stats = CLASSES.get(type);
+        return stats != null && !stats.masked.get() && stats.masked.compareAndSet(false, true);
+    }
+    
+    static void firstCall(long nanos) {
+        FIRST_CALLS.record(nanos);
+    }
+    
+    // null for classes that are not timed
+    static MaskingTimer classTimer(Class<?> type) {
+        ClassStats stats = CLASSES.get(type);
+        if (stats == null) return null;
+        BiConsumer<Class<?>, MaskingTimer> listener = classTimerListener;
+        if (listener != null && !stats.published.get() && stats.published.compareAndSet(false, true)) {
+            listener.accept(type, stats.timer);
+        }
+        return stats.timer;
+    }
+    
+    private static final class ClassStats {
+        final MaskingTimer timer = new MaskingTimer();
+        final AtomicBoolean masked = new AtomicBoolean();
+        final AtomicBoolean published = new AtomicBoolean();
+    }
+}
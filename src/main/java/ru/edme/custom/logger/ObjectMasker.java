@@ -0,0 +1,20 @@
+package ru.edme.custom.logger;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+public interface ObjectMasker<T> {
+    Class<T> type();
+    
+    void appendMasked(T obj, StringBuilder out, TraversalContext context);
+    
+    // For generated maskers: a handle on a field they cannot read directly, looked up once per masker class.
+    static VarHandle field(Class<?> owner, String name) {
+        try {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup())
+                    .unreflectVarHandle(owner.getDeclaredField(name));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.edme.custom.logger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+@Slf4j
+final class ObjectMaskers {
+    private static final Map<Class<?>, ObjectMasker<?>> GENERATED = load();
+    // null for classes without a generated masker
+    private static final ClassValue<ObjectMasker<?>> MASKERS = new ClassValue<>() {
+        @Override
+        protected ObjectMasker<?> computeValue(Class<?> type) {
+            return GENERATED.get(type);
+        }
+    };
+    
+    private ObjectMaskers() {
+    }
+    
+    @SuppressWarnings("unchecked")
+    static ObjectMasker<Object> find(Class<?> type) {
+        return (ObjectMasker<Object>) MASKERS.get(type);
+    }
+    
+    // A provider that fails to load is skipped; its class is masked through reflection like any other. Logged
+    // without arguments, which are masked and could come back here while this class is being initialized.
+    @SuppressWarnings("rawtypes")
+    private static Map<Class<?>, ObjectMasker<?>> load() {
+        Map<Class<?>, ObjectMasker<?>> maskers = new HashMap<>();
+        Iterator<ObjectMasker> providers = ServiceLoader.load(ObjectMasker.class, ObjectMaskers.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) break;
+                ObjectMasker<?> masker = providers.next();
+                maskers.put(masker.type(), masker);
+            } catch (ServiceConfigurationError e) {
+                log.warn("Generated object masker skipped, reflection will be used instead: " + e.getMessage());
+            }
+        }
+        return maskers;
+    }
+}
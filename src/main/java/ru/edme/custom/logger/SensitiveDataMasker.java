@@ -1,41 +1,35 @@
 package ru.edme.custom.logger;
 
-import com.github.benmanes.caffeine.cache.Cache;
 import org.slf4j.Logger;
-import ru.edme.annotation.SensitiveField;
-import ru.edme.annotation.SensitiveObject;
+import ru.edme.custom.logger.MaskingPlan.FieldPlan;
+import ru.edme.custom.logger.MaskingPlan.ValueKind;
 import ru.edme.pattern.MaskingPattern;
+import ru.edme.pattern.MaskingPatternSet;
+import ru.edme.pattern.MaskingTimer;
 
-import java.lang.reflect.Field;
+import java.lang.reflect.Array;
 import java.time.LocalDate;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
-import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
-import static java.lang.System.identityHashCode;
-import static java.lang.ThreadLocal.withInitial;
-import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static java.util.Set.of;
-import static java.util.concurrent.TimeUnit.HOURS;
 
 public class SensitiveDataMasker {
-    private static final ThreadLocal<Set<Integer>> VISITED = withInitial(HashSet::new);
-    private static final Cache<Class<?>, Map<String, Field>> SENSITIVE_FIELD_CACHE =
-            newBuilder()
-                    .maximumSize(1000)
-                    .expireAfterAccess(1, HOURS)
-                    .build();
-    private static final Cache<Field, MaskingPattern[]> PATTERN_CACHE =
-            newBuilder()
-                    .maximumSize(2000)
-                    .build();
     private static final Set<Class<?>> SIMPLE_TYPES = of(
             String.class, Boolean.class, Character.class, Byte.class, Short.class,
             Integer.class, Long.class, Float.class, Double.class
     );
+    private static volatile MaskingLimits limits = MaskingLimits.DEFAULT;
+    
+    public static MaskingLimits getLimits() {
+        return limits;
+    }
+    
+    public static void setLimits(MaskingLimits limits) {
+        SensitiveDataMasker.limits = limits;
+    }
     
     public static Object mask(Object obj) {
         try {
@@ -45,132 +39,335 @@ public class SensitiveDataMasker {
             if (obj instanceof LocalDate date) return date.toString();
             return maskObject(obj);
         } catch (Exception e) {
+            MaskingStats.fallback();
             return "[complex object]";
         }
     }
     
     public static Object mask(Object obj, MaskingPattern pattern) {
         if (obj == null) return null;
-        if (obj instanceof LocalDate date) return pattern.applyTo(date.format(ISO_LOCAL_DATE));
+        if (obj instanceof LocalDate date) return pattern.applyTo(date.toString());
         if (obj instanceof String value) return pattern.applyTo(value);
         return mask(obj);
     }
     
     public static Object maskWithPatterns(Object obj, MaskingPattern[] patterns) {
         if (obj == null || patterns == null || patterns.length == 0) return mask(obj);
-        if (obj instanceof String str) {
-            String result = str;
-            for (MaskingPattern pattern : patterns) result = pattern.applyTo(result);
-            return result;
+        if (obj instanceof String str) return MaskingPatternSet.of(patterns).applyTo(str);
+        if (obj instanceof LocalDate date) return MaskingPatternSet.of(patterns).applyTo(date.toString());
+        return mask(obj, patterns[0]);
+    }
+    
+    public static void maskTo(Object obj, StringBuilder out) {
+        int mark = out.length();
+        try {
+            if (obj instanceof Mask mask) {
+                maskWithPatternsTo(mask.args(), mask.patterns(), out);
+            } else if (isSimpleType(obj) || obj instanceof LocalDate) {
+                out.append(obj);
+            } else {
+                maskObjectTo(obj, out);
+            }
+        } catch (Exception e) {
+            out.setLength(mark);
+            MaskingStats.fallback();
+            out.append("[complex object]");
         }
-        if (obj instanceof LocalDate date) {
-            String result = date.format(ISO_LOCAL_DATE);
-            for (MaskingPattern pattern : patterns) result = pattern.applyTo(result);
-            return result;
+    }
+    
+    private static void maskWithPatternsTo(Object obj, MaskingPattern[] patterns, StringBuilder out) {
+        if (obj == null || patterns == null || patterns.length == 0) {
+            maskTo(obj, out);
+        } else if (obj instanceof String str) {
+            MaskingPatternSet.of(patterns).applyTo(str, out);
+        } else if (obj instanceof LocalDate date) {
+            MaskingPatternSet.of(patterns).applyTo(date, out);
+        } else {
+            maskTo(obj, out);
         }
-        return mask(obj, patterns[0]);
+    }
+    
+    // Builds the field plan, with its compiled patterns, and looks up the generated masker ahead of the first call.
+    public static void prepare(Class<?> type) {
+        MaskingPlan.of(type);
+        ObjectMaskers.find(type);
     }
     
     private static String maskObject(Object obj) {
+        StringBuilder result = new StringBuilder();
+        maskObjectTo(obj, result);
+        return result.toString();
+    }
+    
+    private static void maskObjectTo(Object obj, StringBuilder out) {
+        MaskingScope scope = MaskingScope.current();
+        long stamp = scope != null ? MaskingScope.stamp(obj) : MaskingScope.NOT_MEMOIZABLE;
+        if (stamp != MaskingScope.NOT_MEMOIZABLE) {
+            String memo = scope.get(obj, stamp);
+            if (memo != null) {
+                out.append(memo);
+                return;
+            }
+        }
+        SlowMaskingEvent event = new SlowMaskingEvent();
+        boolean sampled = MaskingTimer.sample();
+        boolean first = MaskingStats.isFirstCall(obj.getClass());
+        long start = sampled || first ? System.nanoTime() : 0;
+        int outputStart = out.length();
+        event.begin();
+        TraversalContext context = TraversalContext.open(limits, outputStart);
         try {
-            VISITED.get().clear();
-            return maskObject(obj, VISITED.get());
+            appendObject(obj, context, out);
         } finally {
-            VISITED.get().clear();
+            context.close();
+        }
+        event.end();
+        if (sampled) {
+            MaskingTimer timer = MaskingStats.classTimer(obj.getClass());
+            if (timer != null) timer.record(System.nanoTime() - start);
         }
+        if (first) MaskingStats.firstCall(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.maskedClass = obj.getClass().getName();
+            event.outputLength = out.length() - outputStart;
+            event.commit();
+        }
+        if (stamp != MaskingScope.NOT_MEMOIZABLE) scope.put(obj, stamp, out.substring(outputStart));
     }
     
-    private static String maskObject(Object obj, Set<Integer> visited) {
-        if (obj == null) return "null";
-        int identity = identityHashCode(obj);
-        if (!visited.add(identity)) {
-            return "[circular-ref]";
+    private static void appendObject(Object obj, TraversalContext context, StringBuilder out) {
+        appendObject(obj, null, context, out);
+    }
+    
+    // elementPatterns is applied to the String and LocalDate elements of a collection, map or array
+    private static void appendObject(Object obj, MaskingPatternSet elementPatterns, TraversalContext context, StringBuilder out) {
+        if (obj == null) {
+            out.append("null");
+            return;
+        }
+        if (context.isTooDeep()) {
+            MaskingStats.truncation();
+            out.append("[max-depth]");
+            return;
+        }
+        if (!context.enter(obj)) {
+            MaskingStats.circularRef();
+            out.append("[circular-ref]");
+            return;
         }
         try {
-            Class<?> clazz = obj.getClass();
-            if (!clazz.isAnnotationPresent(SensitiveObject.class)) {
-                return safeToString(obj);
+            if (obj instanceof Snapshot snapshot) {
+                appendPlanned(snapshot.plan(), null, snapshot.values(), context, out);
+                return;
             }
-            Map<String, Field> sensitiveFields = getSensitiveFields(clazz);
-            Field[] fields = clazz.getDeclaredFields();
-            if (fields.length == 0) return safeToString(obj);
-            StringBuilder result = new StringBuilder(clazz.getSimpleName()).append("{");
-            boolean first = true;
-            for (Field field : fields) {
-                field.setAccessible(true);
-                try {
-                    Object value = field.get(obj);
-                    String maskedValue = maskField(field, value, sensitiveFields, visited);
-                    appendField(result, field.getName(), maskedValue, first);
-                    first = false;
-                } catch (Exception e) {
-                    appendField(result, field.getName(), "[access-error]", first);
-                    first = false;
-                }
+            if (isContainer(obj)) {
+                appendContainer(obj, elementPatterns, context, out);
+                return;
+            }
+            ObjectMasker<Object> generated = ObjectMaskers.find(obj.getClass());
+            if (generated != null) {
+                generated.appendMasked(obj, out, context);
+                return;
             }
-            result.append("}");
-            return result.toString();
+            MaskingPlan plan = MaskingPlan.of(obj.getClass());
+            if (!plan.isSensitiveObject() || plan.fields().length == 0) {
+                appendText(safeToString(obj), context, out);
+                return;
+            }
+            appendPlanned(plan, obj, null, context, out);
         } finally {
-            visited.remove(identity);
+            context.exit(obj);
         }
     }
     
-    private static String maskField(Field field, Object value, Map<String, Field> sensitiveFields, Set<Integer> visited) {
-        if (sensitiveFields.containsKey(field.getName())) {
-            return maskFieldValue(field, value);
-        } else if (shouldRecursivelyMask(value)) {
-            return maskObject(value, visited);
+    private static void appendPlanned(MaskingPlan plan, Object obj, Object[] values, TraversalContext context, StringBuilder out) {
+        FieldPlan[] fields = plan.fields();
+        out.append(plan.simpleName()).append('{');
+        for (int i = 0; i < fields.length; i++) {
+            FieldPlan field = fields[i];
+            if (i > 0) out.append(", ");
+            out.append(field.name()).append('=');
+            int mark = out.length();
+            try {
+                Object value = values != null ? values[i] : field.get(obj);
+                if (value == Snapshot.ACCESS_ERROR) {
+                    MaskingStats.accessError();
+                    out.append("[access-error]");
+                } else {
+                    appendField(field, value, context, out);
+                }
+            } catch (Throwable e) {
+                out.setLength(mark);
+                MaskingStats.accessError();
+                out.append("[access-error]");
+            }
+        }
+        out.append('}');
+    }
+    
+    private static void appendContainer(Object container, MaskingPatternSet patterns, TraversalContext context, StringBuilder out) {
+        if (container instanceof Map<?, ?> map) {
+            appendMap(map, patterns, context, out);
+            return;
+        }
+        if (container instanceof Snapshot.Container snapshot && snapshot.keys() != null) {
+            appendSnapshotMap(snapshot, patterns, context, out);
+            return;
+        }
+        out.append('[');
+        int size;
+        int shown = 0;
+        if (container instanceof Collection<?> collection) {
+            size = collection.size();
+            for (Iterator<?> it = collection.iterator(); it.hasNext() && hasRoom(shown, context, out); shown++) {
+                if (shown > 0) out.append(", ");
+                appendElement(it.next(), patterns, context, out);
+            }
+        } else if (container instanceof Snapshot.Container snapshot) {
+            size = snapshot.size();
+            Object[] values = snapshot.values();
+            for (; shown < values.length && hasRoom(shown, context, out); shown++) {
+                if (shown > 0) out.append(", ");
+                appendElement(values[shown], patterns, context, out);
+            }
         } else {
-            return safeToString(value);
+            size = Array.getLength(container);
+            for (; shown < size && hasRoom(shown, context, out); shown++) {
+                if (shown > 0) out.append(", ");
+                appendElement(Array.get(container, shown), patterns, context, out);
+            }
+        }
+        appendRemainder(size - shown, shown, out);
+        out.append(']');
+    }
+    
+    private static void appendMap(Map<?, ?> map, MaskingPatternSet patterns, TraversalContext context, StringBuilder out) {
+        out.append('{');
+        int shown = 0;
+        for (Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator(); it.hasNext() && hasRoom(shown, context, out); shown++) {
+            Map.Entry<?, ?> entry = it.next();
+            if (shown > 0) out.append(", ");
+            appendElement(entry.getKey(), null, context, out);
+            out.append('=');
+            appendElement(entry.getValue(), patterns, context, out);
         }
+        appendRemainder(map.size() - shown, shown, out);
+        out.append('}');
     }
     
-    private static void appendField(StringBuilder sb, String fieldName, String maskedValue, boolean isFirst) {
-        if (!isFirst) sb.append(", ");
-        sb.append(fieldName).append("=").append(maskedValue);
+    private static void appendSnapshotMap(Snapshot.Container map, MaskingPatternSet patterns, TraversalContext context, StringBuilder out) {
+        out.append('{');
+        Object[] keys = map.keys();
+        Object[] values = map.values();
+        int shown = 0;
+        for (; shown < keys.length && hasRoom(shown, context, out); shown++) {
+            if (shown > 0) out.append(", ");
+            appendElement(keys[shown], null, context, out);
+            out.append('=');
+            appendElement(values[shown], patterns, context, out);
+        }
+        appendRemainder(map.size() - shown, shown, out);
+        out.append('}');
+    }
+    
+    private static boolean hasRoom(int shown, TraversalContext context, StringBuilder out) {
+        return shown < context.maxElements() && !context.isOutputFull(out);
+    }
+    
+    private static void appendRemainder(int remaining, int shown, StringBuilder out) {
+        if (remaining <= 0) return;
+        MaskingStats.truncation();
+        if (shown > 0) out.append(", ");
+        out.append("...(+").append(remaining).append(" more)");
+    }
+    
+    private static void appendElement(Object element, MaskingPatternSet patterns, TraversalContext context, StringBuilder out) {
+        int mark = out.length();
+        if (element == null) {
+            out.append("null");
+        } else if (patterns != null && !patterns.isEmpty() && element instanceof String str) {
+            patterns.applyTo(str, out);
+            cutToBudget(mark, context, out);
+        } else if (patterns != null && !patterns.isEmpty() && element instanceof LocalDate date) {
+            patterns.applyTo(date, out);
+        } else if (shouldRecursivelyMask(element)) {
+            appendObject(element, patterns, context, out);
+        } else {
+            appendText(safeToString(element), context, out);
+        }
+    }
+    
+    public static void appendSensitiveField(StringBuilder out, Object value, MaskingPatternSet patterns, TraversalContext context) {
+        appendFieldValue(patterns, value, context, out);
+    }
+    
+    public static void appendPlainField(StringBuilder out, Object value, TraversalContext context) {
+        if (shouldRecursivelyMask(value)) {
+            appendObject(value, context, out);
+        } else {
+            appendText(safeToString(value), context, out);
+        }
+    }
+    
+    private static void appendField(FieldPlan field, Object value, TraversalContext context, StringBuilder out) {
+        if (field.isSensitive()) {
+            appendFieldValue(field.patterns(), value, context, out);
+        } else if (field.kind() != ValueKind.SIMPLE && field.kind() != ValueKind.DATE && shouldRecursivelyMask(value)) {
+            appendObject(value, context, out);
+        } else {
+            appendText(safeToString(value), context, out);
+        }
     }
     
     private static boolean shouldRecursivelyMask(Object value) {
         if (value == null) return false;
+        if (isContainer(value)) return true;
         Class<?> clazz = value.getClass();
-        if (isSimpleType(value) || clazz.isEnum() || clazz.isArray()) return false;
-        if (Collection.class.isAssignableFrom(clazz)) return false;
-        if (Map.class.isAssignableFrom(clazz)) return false;
+        if (isSimpleType(value) || clazz.isEnum()) return false;
         if (clazz.getPackageName().startsWith("java.") || clazz.getPackageName().startsWith("javax.")) return false;
         if (Logger.class.isAssignableFrom(clazz)) return false;
         return true;
     }
     
-    private static Map<String, Field> getSensitiveFields(Class<?> clazz) {
-        return SENSITIVE_FIELD_CACHE.get(clazz, cls -> {
-            Map<String, Field> map = new ConcurrentHashMap<>();
-            for (Field field : cls.getDeclaredFields()) {
-                if (field.isAnnotationPresent(SensitiveField.class)) {
-                    field.setAccessible(true);
-                    map.put(field.getName(), field);
-                }
-            }
-            return map;
-        });
+    private static void appendFieldValue(MaskingPatternSet patterns, Object value, TraversalContext context, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (isContainer(value)) {
+            appendObject(value, patterns, context, out);
+        } else if (patterns.isEmpty()) {
+            appendText(safeToString(value), context, out);
+        } else if (value instanceof String str) {
+            int mark = out.length();
+            patterns.applyTo(str, out);
+            cutToBudget(mark, context, out);
+        } else if (value instanceof LocalDate date) {
+            patterns.applyTo(date, out);
+        } else if (shouldRecursivelyMask(value)) {
+            appendObject(value, context, out);
+        } else {
+            appendText(safeToString(value), context, out);
+        }
+    }
+    
+    private static void appendText(String text, TraversalContext context, StringBuilder out) {
+        int mark = out.length();
+        out.append(text);
+        cutToBudget(mark, context, out);
     }
     
-    private static String maskFieldValue(Field field, Object value) {
-        if (value == null) return null;
-        MaskingPattern[] patterns = getPatterns(field);
-        if (patterns.length == 0) {
-            if (value instanceof LocalDate date) return date.toString();
-            return safeToString(value);
+    // The character budget is per masking call, i.e. per logging argument. Containers stop before the element that
+    // would start past it; a single value that crosses it is cut there, after it was masked, so the cut never leaves
+    // a fragment of unmasked data that the patterns no longer recognise.
+    private static void cutToBudget(int mark, TraversalContext context, StringBuilder out) {
+        if (context.cut(mark, out)) {
+            MaskingStats.truncation();
+            out.append("[truncated]");
         }
-        return maskWithPatterns(value, patterns).toString();
     }
     
-    private static MaskingPattern[] getPatterns(Field field) {
-        return PATTERN_CACHE.get(field, f -> {
-            SensitiveField annotation = f.getAnnotation(SensitiveField.class);
-            return annotation != null && annotation.patterns().length > 0
-                    ? annotation.patterns()
-                    : new MaskingPattern[0];
-        });
+    private static boolean isContainer(Object value) {
+        return value instanceof Collection<?> || value instanceof Map<?, ?> || value.getClass().isArray()
+                || value instanceof Snapshot.Container;
     }
     
     private static boolean isSimpleType(Object obj) {
@@ -187,4 +384,4 @@ public class SensitiveDataMasker {
             return "[unprintable:" + obj.getClass().getSimpleName() + "]";
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package ru.edme.custom.logger;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by JFR for every object whose masking took longer than the threshold, 20 ms unless the recording
+ * settings say otherwise ({@code ru.edme.SlowMasking#threshold=5 ms}).
+ */
+@Name("ru.edme.SlowMasking")
+@Label("Slow Masking")
+@Category("Masking")
+@Description("Masking an object for the log took longer than the threshold")
+@Threshold("20 ms")
+@StackTrace(false)
+class SlowMaskingEvent extends Event {
+    @Label("Masked Class")
+    String maskedClass;
+    
+    @Label("Output Length")
+    int outputLength;
+}
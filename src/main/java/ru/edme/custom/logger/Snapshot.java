@@ -0,0 +1,99 @@
+package ru.edme.custom.logger;
+
+import ru.edme.custom.logger.MaskingPlan.FieldPlan;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Field values of a {@code @SensitiveObject} read on the logging thread, so that the object can be masked later
+ * on another thread without seeing later mutations. Nested sensitive objects are captured the same way, and
+ * collections, maps and arrays are copied up to {@link MaskingLimits#maxElements()} elements; shared and cyclic
+ * references map to the same snapshot.
+ */
+final class Snapshot {
+    static final Object ACCESS_ERROR = new Object();
+    
+    private final MaskingPlan plan;
+    private final Object[] values;
+    
+    private Snapshot(MaskingPlan plan, Object[] values) {
+        this.plan = plan;
+        this.values = values;
+    }
+    
+    static Object capture(Object value, Map<Object, Object> captured) {
+        if (value == null) return null;
+        if (value instanceof Mask mask) return new Mask(capture(mask.args(), captured), mask.patterns());
+        Object existing = captured.get(value);
+        if (existing != null) return existing;
+        if (value instanceof Collection<?> || value instanceof Map<?, ?> || value.getClass().isArray()) {
+            return captureContainer(value, captured);
+        }
+        MaskingPlan plan = MaskingPlan.of(value.getClass());
+        FieldPlan[] fields = plan.fields();
+        if (!plan.isSensitiveObject() || fields.length == 0) return value;
+        Snapshot snapshot = new Snapshot(plan, new Object[fields.length]);
+        captured.put(value, snapshot);
+        for (int i = 0; i < fields.length; i++) {
+            try {
+                snapshot.values[i] = capture(fields[i].get(value), captured);
+            } catch (Throwable e) {
+                snapshot.values[i] = ACCESS_ERROR;
+            }
+        }
+        return snapshot;
+    }
+    
+    private static Container captureContainer(Object value, Map<Object, Object> captured) {
+        int limit = SensitiveDataMasker.getLimits().maxElements();
+        if (value instanceof Map<?, ?> map) {
+            int size = map.size();
+            Container container = new Container(new Object[Math.min(size, limit)], new Object[Math.min(size, limit)], size);
+            captured.put(value, container);
+            Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator();
+            for (int i = 0; i < container.values.length && it.hasNext(); i++) {
+                Map.Entry<?, ?> entry = it.next();
+                container.keys[i] = capture(entry.getKey(), captured);
+                container.values[i] = capture(entry.getValue(), captured);
+            }
+            return container;
+        }
+        int size = value instanceof Collection<?> collection ? collection.size() : Array.getLength(value);
+        Container container = new Container(null, new Object[Math.min(size, limit)], size);
+        captured.put(value, container);
+        if (value instanceof Collection<?> collection) {
+            Iterator<?> it = collection.iterator();
+            for (int i = 0; i < container.values.length && it.hasNext(); i++) {
+                container.values[i] = capture(it.next(), captured);
+            }
+        } else {
+            for (int i = 0; i < container.values.length; i++) {
+                container.values[i] = capture(Array.get(value, i), captured);
+            }
+        }
+        return container;
+    }
+    
+    MaskingPlan plan() {
+        return plan;
+    }
+    
+    Object[] values() {
+        return values;
+    }
+    
+    @Override
+    public String toString() {
+        return "[deferred:" + plan.simpleName() + "]";
+    }
+    
+    /**
+     * The first elements of a collection or array ({@code keys == null}) or the first entries of a map, and the
+     * size of the original.
+     */
+    record Container(Object[] keys, Object[] values, int size) {
+    }
+}
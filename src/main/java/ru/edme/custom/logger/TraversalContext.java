@@ -0,0 +1,137 @@
+package ru.edme.custom.logger;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Objects on the path from the root being masked to the current one, compared by identity, together with the
+ * {@link MaskingLimits} of the call. Passed down the recursion; each thread reuses one between its masking calls
+ * ({@link #open}, {@link #close}), and a call nested in another on the same thread, from a {@code toString()} that
+ * masks, gets a fresh one. Small paths are kept in an open-addressing table with linear probing; paths deeper than
+ * {@link #INLINE_LIMIT} move to an {@link IdentityHashMap}.
+ */
+public final class TraversalContext {
+    static final int INLINE_LIMIT = 16;
+    private static final int TABLE_SIZE = INLINE_LIMIT * 2;
+    private static final int MASK = TABLE_SIZE - 1;
+    private static final int SHIFT = Integer.numberOfLeadingZeros(MASK);
+    private static final ThreadLocal<TraversalContext> POOLED = ThreadLocal.withInitial(TraversalContext::new);
+    
+    private final Object[] table = new Object[TABLE_SIZE];
+    private MaskingLimits limits;
+    private int outputStart;
+    private int size;
+    private Map<Object, Boolean> overflow;
+    private boolean inUse;
+    
+    TraversalContext() {
+        this(MaskingLimits.DEFAULT, 0);
+    }
+    
+    TraversalContext(MaskingLimits limits, int outputStart) {
+        this.limits = limits;
+        this.outputStart = outputStart;
+    }
+    
+    static TraversalContext open(MaskingLimits limits, int outputStart) {
+        TraversalContext context = POOLED.get();
+        if (context.inUse) return new TraversalContext(limits, outputStart);
+        context.inUse = true;
+        context.limits = limits;
+        context.outputStart = outputStart;
+        return context;
+    }
+    
+    void close() {
+        // the path is empty again unless an exit was skipped; the overflow map is dropped so that a deep call does
+        // not keep it alive
+        if (size != 0) Arrays.fill(table, null);
+        size = 0;
+        overflow = null;
+        inUse = false;
+    }
+    
+    /**
+     * Returns {@code false} if {@code obj} is already on the path, i.e. masking it again would loop.
+     */
+    boolean enter(Object obj) {
+        if (overflow != null) return overflow.put(obj, Boolean.TRUE) == null;
+        int i = slot(obj);
+        for (Object current; (current = table[i]) != null; i = (i + 1) & MASK) {
+            if (current == obj) return false;
+        }
+        if (size == INLINE_LIMIT) {
+            spill();
+            overflow.put(obj, Boolean.TRUE);
+            return true;
+        }
+        table[i] = obj;
+        size++;
+        return true;
+    }
+    
+    void exit(Object obj) {
+        if (overflow != null) {
+            overflow.remove(obj);
+            return;
+        }
+        int i = slot(obj);
+        for (Object current; (current = table[i]) != obj; i = (i + 1) & MASK) {
+            if (current == null) return;
+        }
+        table[i] = null;
+        size--;
+        // backward-shift deletion keeps every remaining entry reachable from its home slot
+        for (int j = (i + 1) & MASK; table[j] != null; j = (j + 1) & MASK) {
+            int home = slot(table[j]);
+            if (((j - home) & MASK) >= ((j - i) & MASK)) {
+                table[i] = table[j];
+                table[j] = null;
+                i = j;
+            }
+        }
+    }
+    
+    int depth() {
+        return overflow != null ? overflow.size() : size;
+    }
+    
+    boolean isTooDeep() {
+        return depth() >= limits.maxDepth();
+    }
+    
+    int maxElements() {
+        return limits.maxElements();
+    }
+    
+    boolean isOutputFull(StringBuilder out) {
+        return out.length() - outputStart >= limits.maxChars();
+    }
+    
+    /**
+     * Drops what was appended to {@code out} from {@code mark} on beyond the character budget; returns {@code false}
+     * if it fits.
+     */
+    boolean cut(int mark, StringBuilder out) {
+        long end = (long) outputStart + limits.maxChars();
+        if (out.length() <= end) return false;
+        out.setLength((int) Math.max(mark, end));
+        return true;
+    }
+    
+    private void spill() {
+        overflow = new IdentityHashMap<>(TABLE_SIZE * 2);
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            if (table[i] != null) {
+                overflow.put(table[i], Boolean.TRUE);
+                table[i] = null;
+            }
+        }
+        size = 0;
+    }
+    
+    private static int slot(Object obj) {
+        return System.identityHashCode(obj) * 0x9E3779B9 >>> SHIFT;
+    }
+}
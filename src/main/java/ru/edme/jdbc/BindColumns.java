@@ -0,0 +1,166 @@
+package ru.edme.jdbc;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+
+/**
+ * Best-effort mapping of the {@code ?} placeholders of a SQL statement to the columns they are bound to, as far as
+ * the text tells: the column list of an {@code INSERT ... VALUES}, and otherwise the column the placeholder is
+ * compared with or assigned to ({@code p1_0.passport_number=?}, {@code set phone=?}, {@code inn in (?,?)}).
+ * Placeholders that cannot be attributed map to {@code null}. Statements are parsed once and cached.
+ */
+final class BindColumns {
+    private static final Cache<String, BindColumns> CACHE = newBuilder().maximumSize(2000).build();
+    // Keywords that end a column's scope: what follows is not compared with it.
+    private static final Set<String> RESETS = Set.of("select", "from", "where", "set", "values", "limit", "offset",
+            "fetch", "top", "having", "group", "order", "by", "when", "then", "else", "case", "on", "join");
+    // Keywords between a column and its placeholder.
+    private static final Set<String> OPERATORS = Set.of("like", "ilike", "in", "not", "between", "and", "is",
+            "escape");
+    
+    private final String[] columns;
+    private final int[] placeholders;
+    
+    private BindColumns(String[] columns, int[] placeholders) {
+        this.columns = columns;
+        this.placeholders = placeholders;
+    }
+    
+    static BindColumns of(String sql) {
+        return CACHE.get(sql, BindColumns::parse);
+    }
+    
+    // The column of the index-th placeholder, 1-based like JDBC, or null.
+    String column(int index) {
+        return index >= 1 && index <= columns.length ? columns[index - 1] : null;
+    }
+    
+    // Offsets of the placeholders in the statement.
+    int[] placeholders() {
+        return placeholders;
+    }
+    
+    private static BindColumns parse(String sql) {
+        List<Token> tokens = tokenize(sql);
+        String[] columns = startsWith(tokens, "insert") ? parseInsert(tokens) : parseComparisons(tokens);
+        int[] placeholders = tokens.stream().filter(token -> token.is("?")).mapToInt(Token::start).toArray();
+        return new BindColumns(columns, placeholders);
+    }
+    
+    private static String[] parseComparisons(List<Token> tokens) {
+        List<String> columns = new ArrayList<>();
+        String column = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.is("?")) {
+                columns.add(column);
+            } else if (token.isIdentifier()) {
+                String word = token.text().toLowerCase(Locale.ROOT);
+                if (RESETS.contains(word)) {
+                    column = null;
+                } else if (!OPERATORS.contains(word) && !(i + 1 < tokens.size() && tokens.get(i + 1).is("("))) {
+                    column = token.columnName();
+                }
+            }
+        }
+        return columns.toArray(String[]::new);
+    }
+    
+    // insert into t (a, b, c) values (?, ?, ?), (?, ?, ?)
+    private static String[] parseInsert(List<Token> tokens) {
+        int open = indexOf(tokens, "(");
+        int values = indexOf(tokens, "values");
+        if (open < 0 || values < open) return parseComparisons(tokens);
+        List<String> names = new ArrayList<>();
+        for (int i = open + 1; i < values && !tokens.get(i).is(")"); i++) {
+            if (tokens.get(i).isIdentifier()) names.add(tokens.get(i).columnName());
+        }
+        List<String> columns = new ArrayList<>();
+        int position = 0;
+        int depth = 0;
+        for (int i = values + 1; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.is("(")) {
+                if (depth++ == 0) position = 0;
+            } else if (token.is(")")) {
+                depth--;
+            } else if (token.is(",") && depth == 1) {
+                position++;
+            } else if (token.is("?")) {
+                columns.add(depth == 1 && position < names.size() ? names.get(position) : null);
+            }
+        }
+        return columns.toArray(String[]::new);
+    }
+    
+    // Identifiers, '?' and single punctuation characters; string literals and comments are dropped.
+    private static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i++;
+                while (i < length && !(sql.charAt(i) == '\'' && (i + 1 >= length || sql.charAt(i + 1) != '\''))) {
+                    i += sql.charAt(i) == '\'' ? 2 : 1;
+                }
+                i++;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                while (i < length && sql.charAt(i) != '\n') i++;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (c == '"' || c == '`') {
+                int end = sql.indexOf(c, i + 1);
+                if (end < 0) end = length;
+                if (end > i + 1) tokens.add(new Token(sql.substring(i + 1, end), i));
+                i = end + 1;
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+                        || sql.charAt(i) == '.' || sql.charAt(i) == '$')) {
+                    i++;
+                }
+                tokens.add(new Token(sql.substring(start, i), start));
+            } else {
+                if (!Character.isWhitespace(c)) tokens.add(new Token(String.valueOf(c), i));
+                i++;
+            }
+        }
+        return tokens;
+    }
+    
+    private static boolean startsWith(List<Token> tokens, String word) {
+        return !tokens.isEmpty() && tokens.get(0).text().equalsIgnoreCase(word);
+    }
+    
+    private static int indexOf(List<Token> tokens, String text) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.get(i).text().equalsIgnoreCase(text)) return i;
+        }
+        return -1;
+    }
+    
+    private record Token(String text, int start) {
+        boolean is(String punctuation) {
+            return text.equals(punctuation);
+        }
+        
+        boolean isIdentifier() {
+            char c = text.charAt(0);
+            return Character.isLetter(c) || c == '_';
+        }
+        
+        // p1_0.passport_number -> passport_number
+        String columnName() {
+            return text.substring(text.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package ru.edme.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.edme.pattern.MaskingPatternSet;
+import ru.edme.pattern.PiiScanner;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs prepared statements with their bind values masked. Binds are only recorded as they are set; the statement
+ * is rendered, with each {@code ?} replaced by its masked value, just for executions slower than
+ * {@code slowThresholdNanos} or picked by one-in-{@code sampleEvery} sampling, so fast unsampled statements cost two
+ * {@link System#nanoTime()} calls on top of the proxy dispatch.
+ * <p>
+ * A value bound to a column that has rules, as found by {@link BindColumns}, is masked with those patterns, numbers
+ * included; other text is passed through {@link PiiScanner} and other numbers are shown as they are. Streams and
+ * LOBs are shown by type only.
+ * <p>
+ * The statements and result sets a proxied connection hands out are proxies too, so that {@code getConnection()} and
+ * {@code getStatement()} lead back to the proxies rather than to the raw objects. Like Spring's connection proxies,
+ * each proxy answers {@code equals}, {@code hashCode}, {@code toString} and {@code unwrap} to its own type itself.
+ */
+@Slf4j
+public class MaskingDataSource extends DelegatingDataSource {
+    private static final Object FORWARD = new Object();
+    
+    private final Map<String, MaskingPatternSet> columnRules;
+    private final long slowThresholdNanos;
+    private final int sampleEvery;
+    
+    public MaskingDataSource(DataSource target, Map<String, MaskingPatternSet> columnRules, long slowThresholdNanos,
+                             int sampleEvery) {
+        super(target);
+        if (slowThresholdNanos < 0) throw new IllegalArgumentException("slowThresholdNanos must not be negative");
+        if (sampleEvery < 0) throw new IllegalArgumentException("sampleEvery must not be negative: " + sampleEvery);
+        this.columnRules = Map.copyOf(columnRules);
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.sampleEvery = sampleEvery;
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+    }
+    
+    String render(String sql, Object[] binds) {
+        BindColumns columns = BindColumns.of(sql);
+        int[] placeholders = columns.placeholders();
+        StringBuilder sb = new StringBuilder(sql.length() + 16 * placeholders.length);
+        int copied = 0;
+        for (int i = 0; i < placeholders.length; i++) {
+            sb.append(sql, copied, placeholders[i]);
+            appendValue(sb, i + 1 < binds.length ? binds[i + 1] : null, columns.column(i + 1));
+            copied = placeholders[i] + 1;
+        }
+        return sb.append(sql, copied, sql.length()).toString();
+    }
+    
+    private void appendValue(StringBuilder sb, Object value, String column) {
+        if (value == null) {
+            sb.append("NULL");
+            return;
+        }
+        MaskingPatternSet patterns = column != null ? columnRules.get(column) : null;
+        // an INN or passport number may well be stored in a numeric column
+        if (value instanceof Number || value instanceof Boolean) {
+            if (patterns != null) {
+                patterns.applyTo(value.toString(), sb);
+            } else {
+                sb.append(value);
+            }
+            return;
+        }
+        sb.append('\'');
+        if (value instanceof java.sql.Date date) value = date.toLocalDate();
+        if (patterns != null && value instanceof LocalDate date) {
+            patterns.applyTo(date, sb);
+        } else if (value instanceof CharSequence || value instanceof Character || value instanceof TemporalAccessor
+                || value instanceof Date) {
+            String text = value.toString();
+            if (patterns != null) {
+                patterns.applyTo(text, sb);
+            } else {
+                PiiScanner.scan(text, sb);
+            }
+        } else if (value instanceof byte[] bytes) {
+            sb.append("[byte[").append(bytes.length).append("]]");
+        } else {
+            sb.append('[').append(value.getClass().getSimpleName()).append(']');
+        }
+        sb.append('\'');
+    }
+    
+    private boolean shouldLog(long nanos) {
+        if (!log.isInfoEnabled()) return false;
+        if (nanos >= slowThresholdNanos) return true;
+        int every = sampleEvery;
+        return every > 0 && (every == 1 || ThreadLocalRandom.current().nextInt(every) == 0);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(MaskingDataSource.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+    
+    // The proxy's own answer to the Object and Wrapper methods, or FORWARD for everything else.
+    private static Object answer(Object proxy, Object target, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> "Masking proxy for " + target;
+            case "unwrap" -> ((Class<?>) args[0]).isInstance(proxy) ? proxy : FORWARD;
+            default -> FORWARD;
+        };
+    }
+    
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object answer = answer(proxy, target, method, args);
+            if (answer != FORWARD) return answer;
+            Object result = MaskingDataSource.invoke(target, method, args);
+            if (!(result instanceof Statement statement)) return result;
+            Connection connection = (Connection) proxy;
+            return switch (method.getName()) {
+                case "prepareCall" -> proxy(CallableStatement.class, new StatementHandler(statement, (String) args[0], connection));
+                case "prepareStatement" -> proxy(PreparedStatement.class, new StatementHandler(statement, (String) args[0], connection));
+                default -> proxy(Statement.class, new StatementHandler(statement, null, connection));
+            };
+        }
+    }
+    
+    // Binds are recorded and executions logged for prepared statements only, the ones with sql.
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private final Connection connection;
+        private Object[] binds = new Object[16];
+        private int batched;
+        
+        StatementHandler(Statement target, String sql, Connection connection) {
+            this.target = target;
+            this.sql = sql;
+            this.connection = connection;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object answer = answer(proxy, target, method, args);
+            if (answer != FORWARD) return answer;
+            Object result = dispatch(method, args);
+            return result instanceof ResultSet resultSet
+                    ? proxy(ResultSet.class, new ResultSetHandler(resultSet, (Statement) proxy))
+                    : result;
+        }
+        
+        private Object dispatch(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection")) return connection;
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, name.equals("setNull") ? null : args[1]);
+                return MaskingDataSource.invoke(target, method, args);
+            }
+            switch (name) {
+                case "clearParameters" -> Arrays.fill(binds, null);
+                case "addBatch" -> batched++;
+                case "clearBatch" -> batched = 0;
+                case "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch",
+                     "executeLargeBatch" -> {
+                    if (sql != null && (args == null || args.length == 0)) return execute(method);
+                }
+                default -> {
+                }
+            }
+            return MaskingDataSource.invoke(target, method, args);
+        }
+        
+        private Object execute(Method method) throws Throwable {
+            long start = System.nanoTime();
+            try {
+                return MaskingDataSource.invoke(target, method, null);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                if (shouldLog(nanos)) {
+                    String batch = method.getName().endsWith("Batch") ? " (batch of " + batched + ", last shown)" : "";
+                    log.info("{} ms{}: {}", nanos / 1_000_000, batch, render(sql, binds));
+                }
+                if (method.getName().endsWith("Batch")) batched = 0;
+            }
+        }
+        
+        private void bind(int index, Object value) {
+            if (index >= binds.length) binds = Arrays.copyOf(binds, Math.max(index + 1, 2 * binds.length));
+            binds[index] = value;
+        }
+    }
+    
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final Statement statement;
+        
+        ResultSetHandler(ResultSet target, Statement statement) {
+            this.target = target;
+            this.statement = statement;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object answer = answer(proxy, target, method, args);
+            if (answer != FORWARD) return answer;
+            if (method.getName().equals("getStatement")) return statement;
+            return MaskingDataSource.invoke(target, method, args);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.edme.pattern;
+
+/**
+ * Hand-written equivalent of the former ADDRESS regex. Every line is split on commas and each segment is scanned
+ * left to right; at each position the segment kinds are tried in the old alternation order (postcode, city,
+ * region, district, street, house, flat) with the same case-insensitive keywords and word boundaries.
+ */
+final class AddressMasker {
+    private static final String[] REGION_KEYWORDS = {"край", "область", "регион", "республика"};
+    private static final String[] DISTRICT_KEYWORDS = {"район", "р-н"};
+    
+    private AddressMasker() {
+    }
+    
+    static void maskTo(CharSequence address, StringBuilder out) {
+        int segmentStart = 0;
+        int length = address.length();
+        for (int i = 0; i <= length; i++) {
+            if (i < length && !isSeparator(address.charAt(i))) continue;
+            maskSegment(address, segmentStart, i, out);
+            if (i < length) out.append(address.charAt(i));
+            segmentStart = i + 1;
+        }
+    }
+    
+    private static void maskSegment(CharSequence s, int start, int end, StringBuilder out) {
+        int regionLimit = lastKeyword(s, start, end, REGION_KEYWORDS);
+        int districtLimit = lastKeyword(s, start, end, DISTRICT_KEYWORDS);
+        int copied = start;
+        int p = start;
+        while (p < end) {
+            boolean boundary = isBoundary(s, p);
+            String replacement;
+            if (boundary && isPostcode(s, p, end)) {
+                out.append(s, copied, p).append("******");
+                p += 6;
+                copied = p;
+                continue;
+            } else if (boundary && isCity(s, p, end)) {
+                replacement = "г. ******";
+            } else if (boundary && p <= regionLimit) {
+                replacement = "*** ***";
+            } else if (boundary && p <= districtLimit) {
+                replacement = "*** р-н";
+            } else if (isStreet(s, p, end) || isHouse(s, p, end) || isFlat(s, p, end)) {
+                replacement = null;
+            } else {
+                p++;
+                continue;
+            }
+            out.append(s, copied, p);
+            if (replacement != null) {
+                out.append(replacement);
+            } else {
+                appendKeepingKeyword(s, p, end, out);
+            }
+            p = end;
+            copied = end;
+        }
+        out.append(s, copied, end);
+    }
+    
+    private static boolean isPostcode(CharSequence s, int p, int end) {
+        if (p + 6 > end) return false;
+        for (int i = p; i < p + 6; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return isBoundary(s, p + 6);
+    }
+    
+    private static boolean isCity(CharSequence s, int p, int end) {
+        int q;
+        if (startsWith(s, p, end, "г.")) {
+            q = p + 2;
+        } else if (startsWith(s, p, end, "город")) {
+            q = p + 5;
+        } else {
+            return false;
+        }
+        return q + 1 < end && isSpace(s.charAt(q));
+    }
+    
+    private static boolean isStreet(CharSequence s, int p, int end) {
+        return startsWith(s, p, end, "ул") && end - p >= 3
+                || startsWith(s, p, end, "пер") && end - p >= 4
+                || startsWith(s, p, end, "проспект") && end - p >= 9
+                || startsWith(s, p, end, "пр-т") && end - p >= 5;
+    }
+    
+    private static boolean isHouse(CharSequence s, int p, int end) {
+        return startsWith(s, p, end, "д") && end - p >= 2;
+    }
+    
+    private static boolean isFlat(CharSequence s, int p, int end) {
+        return startsWith(s, p, end, "кв") && end - p >= 3;
+    }
+    
+    // "ул. Ленина" -> "ул. ***": everything from the first whitespace that is followed by more text is masked.
+    private static void appendKeepingKeyword(CharSequence s, int p, int end, StringBuilder out) {
+        for (int i = p; i < end; i++) {
+            if (isSpace(s.charAt(i))) {
+                if (i + 1 < end) {
+                    out.append(s, p, i).append(" ***");
+                    return;
+                }
+                break;
+            }
+        }
+        out.append(s, p, end);
+    }
+    
+    private static int lastKeyword(CharSequence s, int start, int end, String[] keywords) {
+        for (int k = end - 1; k >= start; k--) {
+            for (String keyword : keywords) {
+                if (startsWith(s, k, end, keyword) && isBoundary(s, k + keyword.length())) return k;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean startsWith(CharSequence s, int p, int end, String lowerCaseKeyword) {
+        if (p + lowerCaseKeyword.length() > end) return false;
+        for (int i = 0; i < lowerCaseKeyword.length(); i++) {
+            char c = s.charAt(p + i);
+            if (c != lowerCaseKeyword.charAt(i)
+                    && Character.toLowerCase(Character.toUpperCase(c)) != lowerCaseKeyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    static boolean isBoundary(CharSequence s, int i) {
+        boolean left = i > 0 && isWord(s, Character.codePointBefore(s, i), i - 1);
+        boolean right = i < s.length() && isWord(s, Character.codePointAt(s, i), i);
+        return left != right;
+    }
+    
+    private static boolean isWord(CharSequence s, int ch, int i) {
+        if (ch == '_' || Character.isLetterOrDigit(ch)) return true;
+        if (Character.getType(ch) != Character.NON_SPACING_MARK) return false;
+        for (int x = i; x >= 0; x--) {
+            int base = Character.codePointAt(s, x);
+            if (Character.isLetterOrDigit(base)) return true;
+            if (Character.getType(base) != Character.NON_SPACING_MARK) return false;
+        }
+        return false;
+    }
+    
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+    
+    private static boolean isSeparator(char c) {
+        return c == ',' || c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,155 @@
+package ru.edme.pattern;
+
+import java.time.LocalDate;
+
+/**
+ * Regex-free maskers for the fixed-format {@link MaskingPattern}s. Each one handles an input that consists of
+ * exactly one value of its shape, appends what the regex would have produced for it and returns {@code true};
+ * for anything else it appends nothing and returns {@code false}, leaving the input to the regex.
+ */
+final class FastPaths {
+    
+    private FastPaths() {
+    }
+    
+    @FunctionalInterface
+    interface FastPath {
+        boolean tryMask(CharSequence input, StringBuilder out);
+    }
+    
+    // 5657 -> 56**
+    static boolean passportSeries(CharSequence s, StringBuilder out) {
+        if (s.length() != 4 || !digits(s, 0, 4)) return false;
+        out.append(s, 0, 2).append("**");
+        return true;
+    }
+    
+    // 656565 -> ******
+    static boolean sixDigits(CharSequence s, StringBuilder out) {
+        if (s.length() != 6 || !digits(s, 0, 6)) return false;
+        out.append("******");
+        return true;
+    }
+    
+    // 6070809010 -> 60********10
+    static boolean inn10(CharSequence s, StringBuilder out) {
+        if (s.length() != 10 || !digits(s, 0, 10)) return false;
+        out.append(s, 0, 2).append("********").append(s, 8, 10);
+        return true;
+    }
+    
+    // 607080901000 -> 60********00
+    static boolean inn12(CharSequence s, StringBuilder out) {
+        if (s.length() != 12 || !digits(s, 0, 12)) return false;
+        out.append(s, 0, 2).append("********").append(s, 10, 12);
+        return true;
+    }
+    
+    // +7(918)140-54-69 -> +7(918)***-**-69
+    static boolean phone(CharSequence s, StringBuilder out) {
+        if (s.length() != 16 || s.charAt(0) != '+' || s.charAt(1) != '7' || s.charAt(2) != '('
+                || !digits(s, 3, 6) || s.charAt(6) != ')' || !digits(s, 7, 10) || s.charAt(10) != '-'
+                || !digits(s, 11, 13) || s.charAt(13) != '-' || !digits(s, 14, 16)) {
+            return false;
+        }
+        out.append(s, 0, 7).append("***-**-").append(s, 14, 16);
+        return true;
+    }
+    
+    // 314-565-256-20 -> 314-***-***-**
+    static boolean snils(CharSequence s, StringBuilder out) {
+        if (s.length() != 14 || !digits(s, 0, 3) || s.charAt(3) != '-' || !digits(s, 4, 7) || s.charAt(7) != '-'
+                || !digits(s, 8, 11) || s.charAt(11) != '-' || !digits(s, 12, 14)) {
+            return false;
+        }
+        out.append(s, 0, 3).append("-***-***-**");
+        return true;
+    }
+    
+    // 023-230 -> 023-***
+    static boolean subdivisionCode(CharSequence s, StringBuilder out) {
+        if (s.length() != 7 || !digits(s, 0, 3) || s.charAt(3) != '-' || !digits(s, 4, 7)) return false;
+        out.append(s, 0, 3).append("-***");
+        return true;
+    }
+    
+    // 10.10.2022 -> **.**.2022
+    static boolean dayFirstDate(CharSequence s, StringBuilder out) {
+        if (s.length() != 10 || !digits(s, 0, 2) || !dateSeparator(s.charAt(2)) || !digits(s, 3, 5)
+                || !dateSeparator(s.charAt(5)) || !digits(s, 6, 10)) {
+            return false;
+        }
+        out.append("**.**.").append(s, 6, 10);
+        return true;
+    }
+    
+    // 2000-12-20 -> 2000-**-**
+    static boolean yearFirstDate(CharSequence s, StringBuilder out) {
+        if (s.length() != 10 || !digits(s, 0, 4) || !dateSeparator(s.charAt(4)) || !digits(s, 5, 7)
+                || !dateSeparator(s.charAt(7)) || !digits(s, 8, 10)) {
+            return false;
+        }
+        out.append(s, 0, 4).append("-**-**");
+        return true;
+    }
+    
+    // LocalDate.of(2000, 12, 20) -> 2000-**-**, without formatting the date first
+    static boolean yearFirstDate(LocalDate date, StringBuilder out) {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) return false;
+        if (year < 1000) out.append('0');
+        if (year < 100) out.append('0');
+        if (year < 10) out.append('0');
+        out.append(year).append("-**-**");
+        return true;
+    }
+    
+    // Галина -> ***
+    static boolean fullName(CharSequence s, StringBuilder out) {
+        int length = s.length();
+        if (length < 2 || !cyrillicUpperCase(s.charAt(0))) return false;
+        for (int i = 1; i < length; i++) {
+            if (!cyrillicLowerCase(s.charAt(i))) return false;
+        }
+        out.append("***");
+        return true;
+    }
+    
+    /**
+     * Whether the input is a single regex word: {@code \b} can then only match at its two ends, so a whole-word
+     * pattern either matches all of it or nothing, which is exactly what its fast path decides.
+     */
+    static boolean isSingleWord(CharSequence s) {
+        int length = s.length();
+        if (length == 0) return false;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_'
+                    || cyrillicUpperCase(c) || cyrillicLowerCase(c)) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+    
+    private static boolean digits(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+    
+    private static boolean dateSeparator(char c) {
+        return c == '-' || c == '.';
+    }
+    
+    private static boolean cyrillicUpperCase(char c) {
+        return c >= 'А' && c <= 'Я' || c == 'Ё';
+    }
+    
+    private static boolean cyrillicLowerCase(char c) {
+        return c >= 'а' && c <= 'я' || c == 'ё';
+    }
+}
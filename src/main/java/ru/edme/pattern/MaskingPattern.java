@@ -1,74 +1,229 @@
 package ru.edme.pattern;
 
+import ru.edme.pattern.FastPaths.FastPath;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static java.util.regex.Pattern.UNICODE_CASE;
-import static java.util.regex.Pattern.CASE_INSENSITIVE;
 import static java.util.regex.Pattern.compile;
+import static ru.edme.pattern.Prefilter.minLength;
 
 public enum MaskingPattern {
-    MASK("(.*)", matchResult -> "*****"),
-    EMAIL("([a-zA-Z0-9._%+-]+)@([a-zA-Z0-9.-]+\\.[a-zA-Z0-9.-]+)", "***@$2"),
-    PHONE("(\\+7\\(\\d{3}\\))\\d{3}-\\d{2}-(\\d{2})", "$1***-**-$2"),
-    SNILS("(\\d{3})-\\d{3}-\\d{3}-\\d{2}", "$1-***-***-**"),
-    PASSPORT_NUMBER("\\b\\d{6}\\b", "******"),
-    PASSPORT_SERIES("\\b(\\d{2})\\d{2}\\b", "$1**"),
-    PASSPORT_ISSUED_BY("((?:ГУ|ОВД|МВД|ФМС)(?:\\s+МВД)?)(.*)", "$1 ***"),
-    SUBDIVISION_CODE("(\\d{3})-(\\d{3})", "$1-***"),
-    DATE_DD_MM_YYYY("\\b(\\d{2})[-.](\\d{2})[-.](\\d{4})\\b", "**.**.$3"),
-    DATE_YYYY_MM_DD("\\b(\\d{4})[-.](\\d{2})[-.](\\d{2})\\b", "$1-**-**"),
-    INN_10_DIGITS("\\b(\\d{2})\\d{6}(\\d{2})\\b", "$1********$2"),
-    INN_12_DIGITS("\\b(\\d{2})\\d{8}(\\d{2})\\b", "$1********$2"),
-    POSTAL_CODE("\\b\\d{6}\\b", "******"),
-    FULL_NAME("\\b[А-ЯЁ][а-яё]+\\b", "***"),
-    ADDRESS("(.*)", matchResult -> {
-        String address = matchResult.group(1);
-        Pattern addressPattern = compile(
-                "(?<POSTCODE>\\b\\d{6}\\b)" +
-                        "|(?<CITY>\\b(?:г\\.\\s+|город\\s+)[^,]+)" +
-                        "|(?<REGION>\\b[^,]*?(?:край|область|регион|республика)\\b[^,]*)" +
-                        "|(?<DISTRICT>\\b[^,]*?(?:район|р-н)\\b[^,]*)" +
-                        "|(?<STREET>(?i)(?:ул\\.?|улица|пер\\.?|переулок|проспект|пр-т)\\s*[^,]+)" +
-                        "|(?<HOUSE>(?i)(?:д\\.?|дом)\\s*[^,]+)" +
-                        "|(?<FLAT>(?i)(?:кв\\.?|квартира)\\s*[^,]+)",
-                CASE_INSENSITIVE | UNICODE_CASE
-        );
-        return addressPattern.matcher(address).replaceAll(mr -> {
-            Matcher matcher = (Matcher) mr;
-            if (matcher.group("POSTCODE") != null) return "******";
-            if (matcher.group("CITY") != null) return "г. ******";
-            if (matcher.group("REGION") != null) return "*** ***";
-            if (matcher.group("DISTRICT") != null) return "*** р-н";
-            return matcher.group().replaceFirst("\\s+.+", " ***");
-        });
-    });
+    MASK("(.*)", matchResult -> "*****", minLength(0)),
+    EMAIL("([a-zA-Z0-9._%+-]+)@([a-zA-Z0-9.-]+\\.[a-zA-Z0-9.-]+)", "***@$2", minLength(5).requires("@.")),
+    PHONE("(\\+7\\(\\d{3}\\))\\d{3}-\\d{2}-(\\d{2})", "$1***-**-$2", minLength(16).digits(11).requires("+()-"), FastPaths::phone),
+    SNILS("(\\d{3})-\\d{3}-\\d{3}-\\d{2}", "$1-***-***-**", minLength(14).digits(11).requires("-"), FastPaths::snils),
+    PASSPORT_NUMBER("\\b\\d{6}\\b", "******", minLength(6).digits(6), FastPaths::sixDigits),
+    PASSPORT_SERIES("\\b(\\d{2})\\d{2}\\b", "$1**", minLength(4).digits(4), FastPaths::passportSeries),
+    PASSPORT_ISSUED_BY("((?:ГУ|ОВД|МВД|ФМС)(?:\\s+МВД)?)(.*)", "$1 ***", minLength(2).anyOf("ГОМФ")),
+    SUBDIVISION_CODE("(\\d{3})-(\\d{3})", "$1-***", minLength(7).digits(6).requires("-"), FastPaths::subdivisionCode),
+    DATE_DD_MM_YYYY("\\b(\\d{2})[-.](\\d{2})[-.](\\d{4})\\b", "**.**.$3", minLength(10).digits(8).anyOf("-."), FastPaths::dayFirstDate),
+    DATE_YYYY_MM_DD("\\b(\\d{4})[-.](\\d{2})[-.](\\d{2})\\b", "$1-**-**", minLength(10).digits(8).anyOf("-."), FastPaths::yearFirstDate),
+    INN_10_DIGITS("\\b(\\d{2})\\d{6}(\\d{2})\\b", "$1********$2", minLength(10).digits(10), FastPaths::inn10),
+    INN_12_DIGITS("\\b(\\d{2})\\d{8}(\\d{2})\\b", "$1********$2", minLength(12).digits(12), FastPaths::inn12),
+    POSTAL_CODE("\\b\\d{6}\\b", "******", minLength(6).digits(6), FastPaths::sixDigits),
+    FULL_NAME("\\b[А-ЯЁ][а-яё]+\\b", "***", minLength(2).cyrillicUpperCase(), FastPaths::fullName),
+    ADDRESS(AddressMasker::maskTo, minLength(2));
     
     private final String regex;
     private final Object replacement;
     private final Pattern compiledPattern;
+    private final ReplacementTemplate template;
+    private final BiConsumer<CharSequence, StringBuilder> masker;
+    private final Prefilter prefilter;
+    private final FastPath fastPath;
+    private final MaskingTimer timer = new MaskingTimer();
+    
+    MaskingPattern(String regex, String replacement, Prefilter prefilter) {
+        this(regex, replacement, prefilter, null);
+    }
     
-    MaskingPattern(String regex, String replacement) {
+    MaskingPattern(String regex, String replacement, Prefilter prefilter, FastPath fastPath) {
         this.regex = regex;
         this.replacement = replacement;
         this.compiledPattern = compile(regex);
+        this.template = ReplacementTemplate.parse(replacement);
+        this.masker = null;
+        this.prefilter = prefilter;
+        this.fastPath = fastPath;
     }
     
-    MaskingPattern(String regex, Function<MatchResult, String> replacement) {
+    MaskingPattern(String regex, Function<MatchResult, String> replacement, Prefilter prefilter) {
         this.regex = regex;
         this.replacement = replacement;
         this.compiledPattern = compile(regex);
+        this.template = null;
+        this.masker = null;
+        this.prefilter = prefilter;
+        this.fastPath = null;
+    }
+    
+    MaskingPattern(BiConsumer<CharSequence, StringBuilder> masker, Prefilter prefilter) {
+        this.regex = null;
+        this.replacement = null;
+        this.compiledPattern = null;
+        this.template = null;
+        this.masker = masker;
+        this.prefilter = prefilter;
+        this.fastPath = null;
+    }
+    
+    String regex() {
+        return regex;
+    }
+    
+    ReplacementTemplate template() {
+        return template;
+    }
+    
+    Prefilter prefilter() {
+        return prefilter;
+    }
+    
+    public long prefilterChecks() {
+        return prefilter.checks();
+    }
+    
+    public long prefilterRejections() {
+        return prefilter.rejections();
+    }
+    
+    public MaskingTimer timer() {
+        return timer;
+    }
+    
+    int groupCount() {
+        return compiledPattern.matcher("").groupCount();
+    }
+    
+    // Patterns whose every match is a whole word (\b on both sides) and whose replacement leaves no word another
+    // of them could match; consecutive ones can be fused into one alternation without changing the chained result.
+    boolean isWordToken() {
+        return switch (this) {
+            case PASSPORT_NUMBER, PASSPORT_SERIES, INN_10_DIGITS, INN_12_DIGITS, POSTAL_CODE, FULL_NAME -> true;
+            default -> false;
+        };
+    }
+    
+    // Appends the masked input when the fast path recognises its shape. A single-word input of any other shape
+    // holds no whole-word match at all, so for word tokens it is copied as is. Either way the input is settled
+    // without the prefilter or the regex.
+    boolean tryFastPath(CharSequence input, StringBuilder out) {
+        if (fastPath == null) return false;
+        if (fastPath.tryMask(input, out)) return true;
+        if (isWordToken() && FastPaths.isSingleWord(input)) {
+            out.append(input);
+            return true;
+        }
+        return false;
+    }
+    
+    // Like tryFastPath, but only for an input of exactly the fast path's shape.
+    boolean tryExactShape(CharSequence input, StringBuilder out) {
+        return fastPath != null && fastPath.tryMask(input, out);
     }
     
     public String applyTo(String input) {
-        if (input == null) return null;
-        if (replacement instanceof String stringReplacement) {
-            return compiledPattern.matcher(input).replaceAll(stringReplacement);
+        if (!MaskingTimer.sample()) return mask(input);
+        long start = System.nanoTime();
+        try {
+            return mask(input);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+    
+    public void applyTo(CharSequence input, StringBuilder out) {
+        if (!MaskingTimer.sample()) {
+            maskTo(input, out);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            maskTo(input, out);
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+    
+    private String mask(String input) {
+        if (input == null) return input;
+        if (fastPath != null) {
+            StringBuilder sb = new StringBuilder(input.length());
+            if (fastPath.tryMask(input, sb)) return sb.toString();
+            if (isWordToken() && FastPaths.isSingleWord(input)) return input;
+        }
+        if (!prefilter.mayMatch(input)) return input;
+        if (masker != null) {
+            StringBuilder sb = new StringBuilder(input.length());
+            masker.accept(input, sb);
+            return input.contentEquals(sb) ? input : sb.toString();
+        }
+        Matcher matcher = compiledPattern.matcher(input);
+        if (!matcher.find()) return input;
+        StringBuilder sb = new StringBuilder(input.length() + 16);
+        appendMatches(matcher, input, sb);
+        return sb.toString();
+    }
+    
+    private void maskTo(CharSequence input, StringBuilder out) {
+        if (input == null) {
+            out.append("null");
+        } else if (!tryFastPath(input, out)) {
+            if (prefilter.mayMatch(input)) {
+                applyRegex(input, out);
+            } else {
+                out.append(input);
+            }
+        }
+    }
+    
+    public void applyTo(LocalDate date, StringBuilder out) {
+        if (date == null) {
+            out.append("null");
+        } else if (this != DATE_YYYY_MM_DD || !FastPaths.yearFirstDate(date, out)) {
+            applyTo(date.toString(), out);
+        }
+    }
+    
+    public void applyTo(CharSequence input, Appendable out) throws IOException {
+        if (out instanceof StringBuilder sb) {
+            applyTo(input, sb);
+        } else {
+            out.append(input == null ? "null" : applyTo(input.toString()));
+        }
+    }
+    
+    private void applyRegex(CharSequence input, StringBuilder out) {
+        if (masker != null) {
+            masker.accept(input, out);
+            return;
+        }
+        Matcher matcher = compiledPattern.matcher(input);
+        if (matcher.find()) {
+            appendMatches(matcher, input, out);
         } else {
-            return compiledPattern.matcher(input)
-                    .replaceAll((Function<MatchResult, String>) replacement);
+            out.append(input);
         }
     }
+    
+    @SuppressWarnings("unchecked")
+    private void appendMatches(Matcher matcher, CharSequence input, StringBuilder out) {
+        int last = 0;
+        do {
+            out.append(input, last, matcher.start());
+            if (template != null) {
+                template.appendTo(out, input, matcher, 0);
+            } else {
+                out.append(((Function<MatchResult, String>) replacement).apply(matcher));
+            }
+            last = matcher.end();
+        } while (matcher.find());
+        out.append(input, last, input.length());
+    }
 }
@@ -0,0 +1,241 @@
+package ru.edme.pattern;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static java.util.regex.Pattern.compile;
+
+/**
+ * A {@link MaskingPattern} array compiled once into the cheapest equivalent of applying its patterns one after
+ * another. Consecutive whole-word patterns are fused into a single alternation and masked in one scan; the
+ * remaining patterns are applied in declaration order as before.
+ * <p>
+ * A set may also name {@link MaskingRule}s, applied after the patterns. Names are resolved against the current
+ * {@link MaskingRules} engine and the result is kept until another engine is published, so a reload takes effect
+ * on the next masking call without the set being rebuilt.
+ */
+public final class MaskingPatternSet {
+    private static final Cache<List<MaskingPattern>, MaskingPatternSet> CACHE =
+            newBuilder()
+                    .maximumSize(1000)
+                    .recordStats()
+                    .build();
+    private static final String[] NO_RULES = new String[0];
+    private static final MaskingPatternSet EMPTY = new MaskingPatternSet(new MaskingPattern[0], new Stage[0], NO_RULES);
+    
+    private final MaskingPattern[] patterns;
+    private final Stage[] stages;
+    private final String[] rules;
+    private volatile ResolvedRules resolved;
+    
+    private MaskingPatternSet(MaskingPattern[] patterns, Stage[] stages, String[] rules) {
+        this.patterns = patterns;
+        this.stages = stages;
+        this.rules = rules;
+    }
+    
+    public static MaskingPatternSet of(MaskingPattern... patterns) {
+        if (patterns == null || patterns.length == 0) return EMPTY;
+        return CACHE.get(List.of(patterns), MaskingPatternSet::compileSet);
+    }
+    
+    // Not cached: sets with rules are built once per annotated field.
+    public static MaskingPatternSet of(MaskingPattern[] patterns, String... rules) {
+        MaskingPatternSet set = of(patterns);
+        if (rules == null || rules.length == 0) return set;
+        return new MaskingPatternSet(set.patterns, set.stages, rules.clone());
+    }
+    
+    public static CacheStats cacheStats() {
+        return CACHE.stats();
+    }
+    
+    public static long cacheSize() {
+        return CACHE.estimatedSize();
+    }
+    
+    public boolean isEmpty() {
+        return patterns.length == 0 && rules.length == 0;
+    }
+    
+    public MaskingPattern[] patterns() {
+        return patterns.clone();
+    }
+    
+    public String[] rules() {
+        return rules.clone();
+    }
+    
+    public String applyTo(String input) {
+        if (input == null) return null;
+        String result = input;
+        for (Stage stage : stages) result = stage.applyTo(result);
+        if (rules.length > 0) {
+            for (MaskingRule rule : resolveRules()) result = rule.applyTo(result);
+        }
+        return result;
+    }
+    
+    public void applyTo(CharSequence input, StringBuilder out) {
+        if (input == null) {
+            out.append("null");
+            return;
+        }
+        if (rules.length > 0) {
+            out.append(applyTo(input.toString()));
+            return;
+        }
+        if (stages.length == 0) {
+            out.append(input);
+            return;
+        }
+        CharSequence result = input;
+        for (int i = 0; i < stages.length - 1; i++) result = stages[i].applyTo(result.toString());
+        stages[stages.length - 1].applyTo(result, out);
+    }
+    
+    public void applyTo(LocalDate date, StringBuilder out) {
+        if (date != null && rules.length == 0 && stages.length == 1 && stages[0] instanceof SingleStage stage) {
+            stage.pattern().applyTo(date, out);
+        } else {
+            applyTo(date == null ? null : date.toString(), out);
+        }
+    }
+    
+    // Racing callers may both resolve; either result is correct for the engine it carries.
+    private MaskingRule[] resolveRules() {
+        MaskingRules engine = MaskingRules.current();
+        ResolvedRules resolved = this.resolved;
+        if (resolved == null || resolved.engine() != engine) {
+            resolved = new ResolvedRules(engine, engine.resolve(rules));
+            this.resolved = resolved;
+        }
+        return resolved.rules();
+    }
+    
+    private static MaskingPatternSet compileSet(List<MaskingPattern> patterns) {
+        List<Stage> stages = new ArrayList<>();
+        int i = 0;
+        while (i < patterns.size()) {
+            int end = i + 1;
+            if (patterns.get(i).isWordToken()) {
+                while (end < patterns.size() && patterns.get(end).isWordToken()) end++;
+            }
+            stages.add(end - i == 1
+                    ? new SingleStage(patterns.get(i))
+                    : new FusedStage(patterns.subList(i, end)));
+            i = end;
+        }
+        return new MaskingPatternSet(patterns.toArray(MaskingPattern[]::new), stages.toArray(Stage[]::new), NO_RULES);
+    }
+    
+    private record ResolvedRules(MaskingRules engine, MaskingRule[] rules) {
+    }
+    
+    private interface Stage {
+        String applyTo(String input);
+        
+        void applyTo(CharSequence input, StringBuilder out);
+    }
+    
+    private record SingleStage(MaskingPattern pattern) implements Stage {
+        @Override
+        public String applyTo(String input) {
+            return pattern.applyTo(input);
+        }
+        
+        @Override
+        public void applyTo(CharSequence input, StringBuilder out) {
+            pattern.applyTo(input, out);
+        }
+    }
+    
+    private static final class FusedStage implements Stage {
+        private final Pattern pattern;
+        private final int[] memberGroups;
+        private final ReplacementTemplate[] templates;
+        private final Prefilter[] prefilters;
+        private final MaskingPattern[] members;
+        
+        private FusedStage(List<MaskingPattern> members) {
+            StringBuilder regex = new StringBuilder();
+            memberGroups = new int[members.size()];
+            templates = new ReplacementTemplate[members.size()];
+            prefilters = new Prefilter[members.size()];
+            this.members = members.toArray(MaskingPattern[]::new);
+            int group = 1;
+            for (int i = 0; i < members.size(); i++) {
+                MaskingPattern member = members.get(i);
+                if (i > 0) regex.append('|');
+                regex.append('(').append(member.regex()).append(')');
+                memberGroups[i] = group;
+                templates[i] = member.template();
+                prefilters[i] = member.prefilter();
+                group += 1 + member.groupCount();
+            }
+            this.pattern = compile(regex.toString());
+        }
+        
+        @Override
+        public String applyTo(String input) {
+            if (FastPaths.isSingleWord(input)) {
+                StringBuilder sb = new StringBuilder(input.length());
+                return appendSingleWord(input, sb) ? sb.toString() : input;
+            }
+            if (!mayMatch(input)) return input;
+            Matcher matcher = pattern.matcher(input);
+            if (!matcher.find()) return input;
+            StringBuilder sb = new StringBuilder(input.length());
+            appendMatches(matcher, input, sb);
+            return sb.toString();
+        }
+        
+        @Override
+        public void applyTo(CharSequence input, StringBuilder out) {
+            Matcher matcher;
+            if (FastPaths.isSingleWord(input)) {
+                if (!appendSingleWord(input, out)) out.append(input);
+            } else if (!mayMatch(input)) {
+                out.append(input);
+            } else if ((matcher = pattern.matcher(input)).find()) {
+                appendMatches(matcher, input, out);
+            } else {
+                out.append(input);
+            }
+        }
+        
+        private boolean mayMatch(CharSequence input) {
+            for (Prefilter prefilter : prefilters) {
+                if (prefilter.mayMatch(input)) return true;
+            }
+            return false;
+        }
+        
+        // A single word is matched whole by the first member of its shape, or not at all.
+        private boolean appendSingleWord(CharSequence input, StringBuilder out) {
+            for (MaskingPattern member : members) {
+                if (member.tryExactShape(input, out)) return true;
+            }
+            return false;
+        }
+        
+        private void appendMatches(Matcher matcher, CharSequence input, StringBuilder out) {
+            int last = 0;
+            do {
+                int member = 0;
+                while (matcher.start(memberGroups[member]) < 0) member++;
+                out.append(input, last, matcher.start());
+                templates[member].appendTo(out, input, matcher, memberGroups[member]);
+                last = matcher.end();
+            } while (matcher.find());
+            out.append(input, last, input.length());
+        }
+    }
+}
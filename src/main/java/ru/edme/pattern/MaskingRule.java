@@ -0,0 +1,100 @@
+package ru.edme.pattern;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A named masking rule referenced from {@code @SensitiveField(rules = ...)}: either one of the {@link MaskingPattern}
+ * built-ins under its constant name, or a regex and replacement configured outside the code. Replacements use
+ * {@code $n} for groups and {@code \} to escape, like the built-ins.
+ */
+public final class MaskingRule {
+    private final String name;
+    private final MaskingPattern builtIn;
+    private final String regex;
+    private final String replacement;
+    private final Pattern pattern;
+    private final ReplacementTemplate template;
+    
+    private MaskingRule(String name, MaskingPattern builtIn, String regex, String replacement, Pattern pattern,
+                        ReplacementTemplate template) {
+        this.name = name;
+        this.builtIn = builtIn;
+        this.regex = regex;
+        this.replacement = replacement;
+        this.pattern = pattern;
+        this.template = template;
+    }
+    
+    static MaskingRule builtIn(MaskingPattern pattern) {
+        return new MaskingRule(pattern.name(), pattern, pattern.regex(), null, null, null);
+    }
+    
+    /**
+     * Compiles a configured rule. Throws {@link IllegalArgumentException} for an invalid regex or a replacement that
+     * refers to a group the regex does not have.
+     */
+    public static MaskingRule compile(String name, String regex, String replacement) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("Rule name must not be blank");
+        if (regex == null || regex.isEmpty()) throw new IllegalArgumentException("Rule " + name + " has no regex");
+        Pattern pattern = Pattern.compile(regex);
+        String text = replacement != null ? replacement : "";
+        ReplacementTemplate template = ReplacementTemplate.parse(text);
+        int groups = pattern.matcher("").groupCount();
+        if (template.maxGroup() > groups) {
+            throw new IllegalArgumentException("Rule " + name + " refers to group $" + template.maxGroup()
+                    + " but its regex has " + groups);
+        }
+        return new MaskingRule(name, null, regex, text, pattern, template);
+    }
+    
+    public String name() {
+        return name;
+    }
+    
+    public boolean isBuiltIn() {
+        return builtIn != null;
+    }
+    
+    public String regex() {
+        return regex;
+    }
+    
+    // null for built-ins, whose replacement may be code
+    public String replacement() {
+        return replacement;
+    }
+    
+    public String applyTo(String input) {
+        if (input == null) return null;
+        if (builtIn != null) return builtIn.applyTo(input);
+        Matcher matcher = pattern.matcher(input);
+        if (!matcher.find()) return input;
+        StringBuilder sb = new StringBuilder(input.length());
+        appendMatches(matcher, input, sb);
+        return sb.toString();
+    }
+    
+    public void applyTo(CharSequence input, StringBuilder out) {
+        if (builtIn != null) {
+            builtIn.applyTo(input, out);
+            return;
+        }
+        Matcher matcher = pattern.matcher(input);
+        if (matcher.find()) {
+            appendMatches(matcher, input, out);
+        } else {
+            out.append(input);
+        }
+    }
+    
+    private void appendMatches(Matcher matcher, CharSequence input, StringBuilder out) {
+        int last = 0;
+        do {
+            out.append(input, last, matcher.start());
+            template.appendTo(out, input, matcher, 0);
+            last = matcher.end();
+        } while (matcher.find());
+        out.append(input, last, input.length());
+    }
+}
@@ -0,0 +1,86 @@
+package ru.edme.pattern;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable, fully compiled set of named {@link MaskingRule}s: the {@link MaskingPattern} built-ins plus the
+ * configured rules. The engine in use is published through a single volatile field, so a reload builds a new
+ * engine off to the side and swaps it in; a masking call sees either the old rules or the new ones, never a mix,
+ * and never waits for a reload.
+ * <p>
+ * Built-in names cannot be redefined. A rule name that the engine does not know resolves to
+ * {@link MaskingPattern#MASK}, so a typo or a rule dropped by a reload hides the whole value rather than leaking it.
+ */
+public final class MaskingRules {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final Map<String, MaskingRule> BUILT_INS = builtIns();
+    private static final MaskingRule UNKNOWN = BUILT_INS.get(MaskingPattern.MASK.name());
+    private static final MaskingRules BUILT_IN = new MaskingRules(BUILT_INS, 0);
+    private static volatile MaskingRules current = BUILT_IN;
+    
+    private final Map<String, MaskingRule> rules;
+    private final long version;
+    
+    private MaskingRules(Map<String, MaskingRule> rules, long version) {
+        this.rules = rules;
+        this.version = version;
+    }
+    
+    public static MaskingRules current() {
+        return current;
+    }
+    
+    public static MaskingRules builtIn() {
+        return BUILT_IN;
+    }
+    
+    public static void publish(MaskingRules rules) {
+        current = rules;
+    }
+    
+    /**
+     * Builds an engine of the built-ins and the given compiled rules. Throws {@link IllegalArgumentException} when
+     * a rule reuses a built-in name or two rules share a name.
+     */
+    public static MaskingRules of(Collection<MaskingRule> custom) {
+        Map<String, MaskingRule> rules = new LinkedHashMap<>(BUILT_INS);
+        for (MaskingRule rule : custom) {
+            if (BUILT_INS.containsKey(rule.name())) {
+                throw new IllegalArgumentException("Built-in rule " + rule.name() + " cannot be redefined");
+            }
+            if (rules.putIfAbsent(rule.name(), rule) != null) {
+                throw new IllegalArgumentException("Duplicate rule " + rule.name());
+            }
+        }
+        return new MaskingRules(Collections.unmodifiableMap(rules), VERSIONS.incrementAndGet());
+    }
+    
+    public MaskingRule rule(String name) {
+        return rules.get(name);
+    }
+    
+    public Map<String, MaskingRule> rules() {
+        return rules;
+    }
+    
+    // 0 for the built-ins alone, increasing with every engine built since
+    public long version() {
+        return version;
+    }
+    
+    MaskingRule[] resolve(String[] names) {
+        MaskingRule[] resolved = new MaskingRule[names.length];
+        for (int i = 0; i < names.length; i++) resolved[i] = rules.getOrDefault(names[i], UNKNOWN);
+        return resolved;
+    }
+    
+    private static Map<String, MaskingRule> builtIns() {
+        Map<String, MaskingRule> rules = new LinkedHashMap<>();
+        for (MaskingPattern pattern : MaskingPattern.values()) rules.put(pattern.name(), MaskingRule.builtIn(pattern));
+        return Collections.unmodifiableMap(rules);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.edme.pattern;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, total and maximum time of sampled masking calls. Only one call in {@link #getSampleEvery()} is timed, so
+ * the common path costs a volatile read; {@code 0} switches timing off altogether.
+ */
+public final class MaskingTimer {
+    private static volatile int sampleEvery;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public static int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public static void setSampleEvery(int sampleEvery) {
+        if (sampleEvery < 0) throw new IllegalArgumentException("sampleEvery must not be negative: " + sampleEvery);
+        MaskingTimer.sampleEvery = sampleEvery;
+    }
+
+    public static boolean sample() {
+        int every = sampleEvery;
+        return every > 0 && (every == 1 || ThreadLocalRandom.current().nextInt(every) == 0);
+    }
+
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+}
@@ -0,0 +1,138 @@
+package ru.edme.pattern;
+
+/**
+ * Masks the identifiers that are recognisable in free text - EMAIL, PHONE, SNILS, INN_10_DIGITS and INN_12_DIGITS -
+ * in a single left-to-right pass. The result is that of one scan with the alternation of those patterns, in that
+ * order: at every position the first pattern that matches wins and the scan resumes after it.
+ * <p>
+ * Each position is dispatched on its character: {@code '+'} can only start a phone number, a digit a SNILS or an
+ * INN, and a character of an email's local part an email. The email check depends only on where the current run of
+ * local-part characters ends, which is computed once per run, so the whole scan is linear in the input length.
+ */
+public final class PiiScanner {
+    
+    private PiiScanner() {
+    }
+    
+    public static String scan(String input) {
+        if (input == null || !mayContainPii(input)) return input;
+        StringBuilder sb = new StringBuilder(input.length());
+        return scanTo(input, sb) ? sb.toString() : input;
+    }
+    
+    public static void scan(CharSequence input, StringBuilder out) {
+        if (input == null) {
+            out.append("null");
+        } else if (!mayContainPii(input)) {
+            out.append(input);
+        } else {
+            scanTo(input, out);
+        }
+    }
+    
+    // Every identifier covered here contains an '@' or at least ten digits.
+    private static boolean mayContainPii(CharSequence input) {
+        int digits = 0;
+        for (int i = 0, length = input.length(); i < length; i++) {
+            char c = input.charAt(i);
+            if (c == '@' || c >= '0' && c <= '9' && ++digits == 10) return true;
+        }
+        return false;
+    }
+    
+    // Returns whether anything was masked.
+    private static boolean scanTo(CharSequence s, StringBuilder out) {
+        int length = s.length();
+        int copied = 0;
+        int localRunEnd = -1;
+        int emailEnd = -1;
+        int p = 0;
+        while (p < length) {
+            char c = s.charAt(p);
+            int end = -1;
+            if (isLocalPart(c)) {
+                if (p >= localRunEnd) {
+                    localRunEnd = p + 1;
+                    while (localRunEnd < length && isLocalPart(s.charAt(localRunEnd))) localRunEnd++;
+                    emailEnd = localRunEnd < length && s.charAt(localRunEnd) == '@' ? domainEnd(s, localRunEnd + 1) : -1;
+                }
+                if (emailEnd > 0) {
+                    out.append(s, copied, p).append("***").append(s, localRunEnd, emailEnd);
+                    end = emailEnd;
+                }
+            }
+            if (end < 0 && c == '+' && isPhone(s, p)) {
+                out.append(s, copied, p).append(s, p, p + 7).append("***-**-").append(s, p + 14, p + 16);
+                end = p + 16;
+            } else if (end < 0 && c >= '0' && c <= '9') {
+                if (isSnils(s, p)) {
+                    out.append(s, copied, p).append(s, p, p + 3).append("-***-***-**");
+                    end = p + 14;
+                } else if (isWordOfDigits(s, p, 10) || isWordOfDigits(s, p, 12)) {
+                    end = isBoundary(s, p + 10) ? p + 10 : p + 12;
+                    out.append(s, copied, p).append(s, p, p + 2).append("********").append(s, end - 2, end);
+                }
+            }
+            if (end < 0) {
+                p++;
+            } else {
+                p = end;
+                copied = end;
+            }
+        }
+        out.append(s, copied, length);
+        return copied > 0;
+    }
+    
+    // [a-zA-Z0-9.-]+\.[a-zA-Z0-9.-]+ after the '@': the greedy match takes the whole run of domain characters as
+    // long as it has a dot with something on both sides.
+    private static int domainEnd(CharSequence s, int from) {
+        int end = from;
+        while (end < s.length() && isDomain(s.charAt(end))) end++;
+        for (int i = from + 1; i < end - 1; i++) {
+            if (s.charAt(i) == '.') return end;
+        }
+        return -1;
+    }
+    
+    // +7(ddd)ddd-dd-dd
+    private static boolean isPhone(CharSequence s, int p) {
+        return p + 16 <= s.length() && s.charAt(p + 1) == '7' && s.charAt(p + 2) == '(' && digits(s, p + 3, p + 6)
+                && s.charAt(p + 6) == ')' && digits(s, p + 7, p + 10) && s.charAt(p + 10) == '-'
+                && digits(s, p + 11, p + 13) && s.charAt(p + 13) == '-' && digits(s, p + 14, p + 16);
+    }
+    
+    // ddd-ddd-ddd-dd
+    private static boolean isSnils(CharSequence s, int p) {
+        return p + 14 <= s.length() && digits(s, p, p + 3) && s.charAt(p + 3) == '-' && digits(s, p + 4, p + 7)
+                && s.charAt(p + 7) == '-' && digits(s, p + 8, p + 11) && s.charAt(p + 11) == '-'
+                && digits(s, p + 12, p + 14);
+    }
+    
+    // \b\d{count}\b
+    private static boolean isWordOfDigits(CharSequence s, int p, int count) {
+        return p + count <= s.length() && isBoundary(s, p) && digits(s, p, p + count) && isBoundary(s, p + count);
+    }
+    
+    private static boolean isBoundary(CharSequence s, int i) {
+        return AddressMasker.isBoundary(s, i);
+    }
+    
+    private static boolean digits(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+    
+    // [a-zA-Z0-9._%+-]
+    private static boolean isLocalPart(char c) {
+        return isDomain(c) || c == '_' || c == '%' || c == '+';
+    }
+    
+    // [a-zA-Z0-9.-]
+    private static boolean isDomain(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.' || c == '-';
+    }
+}
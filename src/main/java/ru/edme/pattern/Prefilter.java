@@ -0,0 +1,85 @@
+package ru.edme.pattern;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Necessary conditions for a {@link MaskingPattern} to change its input, checked in a single pass before any
+ * regex work: a minimum length, a minimum number of ASCII digits, characters that must all occur, characters of
+ * which at least one must occur and, optionally, a Cyrillic upper-case letter.
+ */
+final class Prefilter {
+    private final int minLength;
+    private final int minDigits;
+    private final String required;
+    private final String anyOf;
+    private final boolean cyrillicUpperCase;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    
+    private Prefilter(int minLength, int minDigits, String required, String anyOf, boolean cyrillicUpperCase) {
+        this.minLength = minLength;
+        this.minDigits = minDigits;
+        this.required = required;
+        this.anyOf = anyOf;
+        this.cyrillicUpperCase = cyrillicUpperCase;
+    }
+    
+    static Prefilter minLength(int minLength) {
+        return new Prefilter(minLength, 0, "", "", false);
+    }
+    
+    Prefilter digits(int minDigits) {
+        return new Prefilter(minLength, minDigits, required, anyOf, cyrillicUpperCase);
+    }
+    
+    Prefilter requires(String chars) {
+        return new Prefilter(minLength, minDigits, chars, anyOf, cyrillicUpperCase);
+    }
+    
+    Prefilter anyOf(String chars) {
+        return new Prefilter(minLength, minDigits, required, chars, cyrillicUpperCase);
+    }
+    
+    Prefilter cyrillicUpperCase() {
+        return new Prefilter(minLength, minDigits, required, anyOf, true);
+    }
+    
+    boolean mayMatch(CharSequence input) {
+        checks.increment();
+        if (test(input)) return true;
+        rejections.increment();
+        return false;
+    }
+    
+    long checks() {
+        return checks.sum();
+    }
+    
+    long rejections() {
+        return rejections.sum();
+    }
+    
+    private boolean test(CharSequence input) {
+        int length = input.length();
+        if (length < minLength) return false;
+        int allRequired = (1 << required.length()) - 1;
+        int seen = 0;
+        int digits = 0;
+        boolean any = anyOf.isEmpty();
+        boolean upperCase = !cyrillicUpperCase;
+        if (minDigits == 0 && allRequired == 0 && any && upperCase) return true;
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else {
+                int r = required.indexOf(c);
+                if (r >= 0) seen |= 1 << r;
+                if (!any && anyOf.indexOf(c) >= 0) any = true;
+                if (!upperCase && (c >= 'А' && c <= 'Я' || c == 'Ё')) upperCase = true;
+            }
+            if (digits >= minDigits && seen == allRequired && any && upperCase) return true;
+        }
+        return false;
+    }
+}
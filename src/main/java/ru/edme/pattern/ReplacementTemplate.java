@@ -0,0 +1,53 @@
+package ru.edme.pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.MatchResult;
+
+final class ReplacementTemplate {
+    private final String[] literals;
+    private final int[] groups;
+    
+    private ReplacementTemplate(String[] literals, int[] groups) {
+        this.literals = literals;
+        this.groups = groups;
+    }
+    
+    static ReplacementTemplate parse(String replacement) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> groups = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            if (c == '\\' && i + 1 < replacement.length()) {
+                literal.append(replacement.charAt(++i));
+            } else if (c == '$' && i + 1 < replacement.length() && Character.isDigit(replacement.charAt(i + 1))) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                groups.add(replacement.charAt(++i) - '0');
+            } else {
+                literal.append(c);
+            }
+        }
+        literals.add(literal.toString());
+        return new ReplacementTemplate(
+                literals.toArray(String[]::new),
+                groups.stream().mapToInt(Integer::intValue).toArray());
+    }
+    
+    int maxGroup() {
+        int max = 0;
+        for (int group : groups) max = Math.max(max, group);
+        return max;
+    }
+    
+    void appendTo(StringBuilder sb, CharSequence input, MatchResult match, int groupOffset) {
+        sb.append(literals[0]);
+        for (int i = 0; i < groups.length; i++) {
+            int group = groupOffset + groups[i];
+            int start = match.start(group);
+            if (start >= 0) sb.append(input, start, match.end(group));
+            sb.append(literals[i + 1]);
+        }
+    }
+}
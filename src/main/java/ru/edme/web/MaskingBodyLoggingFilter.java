@@ -0,0 +1,204 @@
+package ru.edme.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.edme.pattern.MaskingPatternSet;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Logs JSON request and response bodies with sensitive fields masked. The controller reads and writes the original
+ * streams; the wrappers only hand each chunk that passes through to a {@link MaskingJsonTee}, which keeps nothing
+ * but the masked copy, capped at {@code maxChars}. Bodies that are not JSON are not looked at.
+ */
+@Slf4j
+public class MaskingBodyLoggingFilter extends OncePerRequestFilter {
+    private final Map<String, MaskingPatternSet> rules;
+    private final int maxChars;
+    
+    public MaskingBodyLoggingFilter(Map<String, MaskingPatternSet> rules, int maxChars) {
+        if (maxChars < 1) throw new IllegalArgumentException("maxChars must be positive: " + maxChars);
+        this.rules = Map.copyOf(rules);
+        this.maxChars = maxChars;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !log.isInfoEnabled();
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        MaskingJsonTee requestBody = isJson(request.getContentType()) ? new MaskingJsonTee(rules, maxChars) : null;
+        TeeResponse teeResponse = new TeeResponse(response, new MaskingJsonTee(rules, maxChars));
+        try {
+            chain.doFilter(requestBody != null ? new TeeRequest(request, requestBody) : request, teeResponse);
+        } finally {
+            teeResponse.flushWriter();
+            log.info("{} {} -> {} request={} response={}", request.getMethod(), request.getRequestURI(),
+                    response.getStatus(), requestBody != null ? requestBody.result() : "", teeResponse.body.result());
+        }
+    }
+    
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.toLowerCase().contains("json");
+    }
+    
+    private static final class TeeRequest extends HttpServletRequestWrapper {
+        private final MaskingJsonTee body;
+        private ServletInputStream stream;
+        
+        TeeRequest(HttpServletRequest request, MaskingJsonTee body) {
+            super(request);
+            this.body = body;
+        }
+        
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) stream = new TeeInputStream(super.getInputStream(), body);
+            return stream;
+        }
+    }
+    
+    private static final class TeeInputStream extends ServletInputStream {
+        private final ServletInputStream in;
+        private final MaskingJsonTee body;
+        
+        TeeInputStream(ServletInputStream in, MaskingJsonTee body) {
+            this.in = in;
+            this.body = body;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) body.feed(b);
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = in.read(bytes, offset, length);
+            if (read > 0) body.feed(bytes, offset, read);
+            return read;
+        }
+        
+        @Override
+        public boolean isFinished() {
+            return in.isFinished();
+        }
+        
+        @Override
+        public boolean isReady() {
+            return in.isReady();
+        }
+        
+        @Override
+        public void setReadListener(ReadListener listener) {
+            in.setReadListener(listener);
+        }
+    }
+    
+    private static final class TeeResponse extends HttpServletResponseWrapper {
+        private final MaskingJsonTee body;
+        private TeeOutputStream stream;
+        private PrintWriter writer;
+        private Boolean json;
+        
+        TeeResponse(HttpServletResponse response, MaskingJsonTee body) {
+            super(response);
+            this.body = body;
+        }
+        
+        // The content type is known by the time the body is written, not when the chain starts.
+        void tee(byte[] bytes, int offset, int length) {
+            if (json == null) json = isJson(getContentType());
+            if (json) body.feed(bytes, offset, length);
+        }
+        
+        void flushWriter() {
+            if (writer != null) writer.flush();
+        }
+        
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) stream = new TeeOutputStream(super.getOutputStream(), this);
+            return stream;
+        }
+        
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                String encoding = getCharacterEncoding();
+                Charset charset = encoding != null ? Charset.forName(encoding) : UTF_8;
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), charset));
+            }
+            return writer;
+        }
+        
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+    }
+    
+    private static final class TeeOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+        private final TeeResponse response;
+        
+        TeeOutputStream(ServletOutputStream out, TeeResponse response) {
+            this.out = out;
+            this.response = response;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            response.tee(new byte[] {(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            response.tee(bytes, offset, length);
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+        
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+        
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            out.setWriteListener(listener);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package ru.edme.web;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import ru.edme.pattern.MaskingPatternSet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Builds the masked log copy of a JSON body from the chunks the application reads or writes anyway. Each chunk is
+ * fed to a non-blocking parser and the tokens it completes are written out again right away, with the values of
+ * sensitive fields masked, so the body itself is never buffered. Output stops at {@code maxChars}, and so does
+ * parsing once a single value is longer than that: the parser would otherwise collect all of it.
+ * <p>
+ * A rule applies to a field by name ({@code phone}) or by JSON Pointer ({@code /client/phone}); elements of an
+ * array are masked by the rule of the field holding the array.
+ */
+public final class MaskingJsonTee {
+    private static final JsonFactory FACTORY = new JsonFactory();
+    
+    private final Map<String, MaskingPatternSet> rules;
+    private final boolean hasPointerRules;
+    private final CappedWriter out;
+    private long fed;
+    private JsonParser parser;
+    private JsonGenerator generator;
+    private String failure;
+    
+    public MaskingJsonTee(Map<String, MaskingPatternSet> rules, int maxChars) {
+        this.rules = rules;
+        this.hasPointerRules = rules.keySet().stream().anyMatch(rule -> rule.startsWith("/"));
+        this.out = new CappedWriter(maxChars);
+    }
+    
+    public void feed(byte[] bytes, int offset, int length) {
+        if (length <= 0 || isDone()) return;
+        try {
+            if (parser == null) {
+                parser = FACTORY.createNonBlockingByteArrayParser();
+                generator = FACTORY.createGenerator(out);
+            }
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, offset, offset + length);
+            fed += length;
+            drain();
+            // the bytes of an incomplete token are held by the parser until it ends
+            if (fed - parser.currentTokenLocation().getByteOffset() > out.room()) out.stop();
+        } catch (IOException | RuntimeException e) {
+            failure = "[unparseable body]";
+        }
+    }
+    
+    public void feed(int b) {
+        feed(new byte[] {(byte) b}, 0, 1);
+    }
+    
+    public String result() {
+        if (parser == null) return "";
+        if (failure == null && !out.isFull()) {
+            try {
+                ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+                drain();
+            } catch (IOException | RuntimeException e) {
+                failure = "[unparseable body]";
+            }
+        }
+        try {
+            generator.flush();
+        } catch (IOException ignored) {
+            // the writer is in memory
+        }
+        if (failure != null) return out.text() + failure;
+        return out.isFull() ? out.text() + "...(truncated)" : out.text();
+    }
+    
+    private boolean isDone() {
+        return failure != null || out.isFull();
+    }
+    
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!out.isFull() && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            MaskingPatternSet patterns = token.isScalarValue() ? rule(parser.getParsingContext()) : null;
+            if (patterns == null || token == JsonToken.VALUE_NULL) {
+                generator.copyCurrentEvent(parser);
+            } else {
+                generator.writeString(patterns.applyTo(parser.getText()));
+            }
+            // the generator buffers its output; the cap is checked on what reached the writer
+            generator.flush();
+        }
+    }
+    
+    private MaskingPatternSet rule(JsonStreamContext context) {
+        JsonStreamContext field = context.inArray() && context.getParent() != null ? context.getParent() : context;
+        String name = field.getCurrentName();
+        if (name == null) return null;
+        MaskingPatternSet patterns = rules.get(name);
+        if (patterns == null && hasPointerRules) patterns = rules.get(field.pathAsPointer().toString());
+        return patterns;
+    }
+    
+    private static final class CappedWriter extends Writer {
+        private final StringBuilder text = new StringBuilder();
+        private final int maxChars;
+        private boolean stopped;
+        
+        private CappedWriter(int maxChars) {
+            this.maxChars = maxChars;
+        }
+        
+        boolean isFull() {
+            return stopped || text.length() >= maxChars;
+        }
+        
+        int room() {
+            return maxChars - text.length();
+        }
+        
+        void stop() {
+            stopped = true;
+        }
+        
+        String text() {
+            return text.toString();
+        }
+        
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            text.append(chars, offset, Math.min(length, Math.max(0, maxChars - text.length())));
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ru.edme.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.edme.custom.logger.MaskingScope;
+
+import java.io.IOException;
+
+/**
+ * Opens a {@link MaskingScope} around each request, so an object logged several times while handling it is masked
+ * once, and drops the memo when the request is done.
+ */
+public class MaskingScopeFilter extends OncePerRequestFilter {
+    private final int maxEntries;
+    
+    public MaskingScopeFilter(int maxEntries) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        this.maxEntries = maxEntries;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (MaskingScope scope = MaskingScope.open(maxEntries)) {
+            chain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.edme;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LogScrubberTest {
+
+    @Test
+    public void testValueAcrossTheLineBufferIsMasked() throws IOException {
+        // with 32-char tokens the buffer fills within the phone and then within the e-mail
+        String line = "order 17 for client +7(918)140-54-32 contact boor_yonk@mail.ru inn 7707083893 done";
+        assertEquals("order 17 for client +7(918)***-**-32 contact ***@mail.ru inn 77********93 done\n",
+                scrub(line + "\n", 32, 1 << 20));
+        // and chunks of 16 bytes end within the line as well
+        assertEquals("order 17 for client +7(918)***-**-32 contact ***@mail.ru inn 77********93 done\r\n",
+                scrub(line + "\r\n", 32, 16));
+    }
+
+    @Test
+    public void testOversizedTokenIsReplaced() throws IOException {
+        String token = "x".repeat(40) + "boor_yonk@mail.ru";
+        assertEquals("id " + LogScrubber.OVERSIZED + " from ***@mail.ru\nnext\n",
+                scrub("id " + token + " from ivan@mail.ru\nnext\n", 32, 1 << 20));
+        assertEquals(LogScrubber.OVERSIZED, scrub(token, 32, 8));
+    }
+
+    private static String scrub(String input, int maxTokenChars, int chunkSize) throws IOException {
+        Path in = Files.createTempFile("scrub", ".log");
+        Path out = Files.createTempFile("scrub", ".masked.log");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Files.writeString(in, input, UTF_8);
+            new LogScrubber(LogScrubber.DEFAULT_PATTERNS, chunkSize, 4, maxTokenChars, pool)
+                    .scrub(in, out, new PrintStream(OutputStream.nullOutputStream()), 60);
+            return Files.readString(out, UTF_8);
+        } finally {
+            pool.shutdown();
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+}
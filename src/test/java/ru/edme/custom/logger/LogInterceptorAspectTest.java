@@ -1,5 +1,6 @@
 package ru.edme.custom.logger;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
@@ -7,12 +8,22 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
+import org.aspectj.lang.Aspects;
 import org.junit.jupiter.api.Test;
 import org.slf4j.LoggerFactory;
+import ru.edme.aspect.CallSiteRateLimiter;
+import ru.edme.aspect.LogInterceptorAspect;
+import ru.edme.aspect.MaskingMode;
 import ru.edme.model.Person;
 
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static ru.edme.custom.logger.Mask.sensitive;
 import static ru.edme.pattern.MaskingPattern.ADDRESS;
@@ -94,4 +105,98 @@ public class LogInterceptorAspectTest {
         assertTrue(msg.contains("email=***@mail.ru"));
         assertTrue(msg.contains("phone=+7(999)***-**-67"));
     }
+
+    @Test
+    public void testDeferredMasking() {
+        LogInterceptorAspect aspect = Aspects.aspectOf(LogInterceptorAspect.class);
+        aspect.setMode(MaskingMode.DEFERRED);
+        try {
+            log.info("Person: {}", testPerson);
+        } finally {
+            aspect.setMode(MaskingMode.EAGER);
+        }
+        String firstName = testPerson.getFirstName();
+        testPerson.setFirstName("Changed");
+        ILoggingEvent event = listAppender.list.get(0);
+        assertFalse(event.getFormattedMessage().contains(firstName));
+        String msg = new MaskingMessageConverter().convert(event);
+        assertTrue(msg.contains("firstName=***"));
+        assertTrue(msg.contains("email=***@mail.ru"));
+        assertFalse(msg.contains("Changed"));
+    }
+
+    @Test
+    public void testScanMode() {
+        LogInterceptorAspect aspect = Aspects.aspectOf(LogInterceptorAspect.class);
+        aspect.setScan(true);
+        try {
+            log.info("Callback to +7(918)140-54-69 requested by boor_yonk@mail.ru");
+            log.info("SNILS {} for {}", "314-565-256-20", "Галина");
+        } finally {
+            aspect.setScan(false);
+        }
+        assertEquals("Callback to +7(918)***-**-69 requested by ***@mail.ru",
+                listAppender.list.get(0).getFormattedMessage());
+        assertEquals("SNILS 314-***-***-** for Галина", listAppender.list.get(1).getFormattedMessage());
+    }
+
+    @Test
+    public void testRateLimitedCallSite() {
+        LogInterceptorAspect aspect = Aspects.aspectOf(LogInterceptorAspect.class);
+        CallSiteRateLimiter limiter = new CallSiteRateLimiter(1, 3, Duration.ofHours(1));
+        aspect.setRateLimiter(limiter);
+        try {
+            for (int i = 0; i < 10; i++) {
+                log.error("Lookup failed for {}", testPerson);
+            }
+        } finally {
+            aspect.setRateLimiter(null);
+        }
+        assertEquals(3, listAppender.list.size());
+        assertEquals(7, limiter.suppressed());
+    }
+
+    @Test
+    public void testRateLimitSummaryOfLastStorm() {
+        LogInterceptorAspect aspect = Aspects.aspectOf(LogInterceptorAspect.class);
+        CallSiteRateLimiter limiter = new CallSiteRateLimiter(1, 3, Duration.ofHours(1));
+        aspect.setRateLimiter(limiter);
+        try {
+            for (int i = 0; i < 10; i++) {
+                log.error("Lookup failed for {}", testPerson);
+            }
+        } finally {
+            aspect.setRateLimiter(null);
+        }
+        Map<?, ?> pending = (Map<?, ?>) limiter.describe(10).get("pendingSummaries");
+        assertEquals(List.of(7L), List.copyOf(pending.values()));
+
+        limiter.close();
+        assertEquals(4, listAppender.list.size());
+        assertTrue(listAppender.list.get(3).getFormattedMessage().startsWith("Suppressed 7 similar log events at "));
+        assertTrue(((Map<?, ?>) limiter.describe(10).get("pendingSummaries")).isEmpty());
+    }
+
+    @Test
+    public void testRateLimitedPlainAndFluentCalls() {
+        LogInterceptorAspect aspect = Aspects.aspectOf(LogInterceptorAspect.class);
+        CallSiteRateLimiter limiter = new CallSiteRateLimiter(1, 3, Duration.ofHours(1));
+        aspect.setRateLimiter(limiter);
+        try {
+            for (int i = 0; i < 10; i++) {
+                log.error("Lookup failed");
+                log.atWarn().addArgument(testPerson).log("Lookup failed for {}");
+            }
+        } finally {
+            aspect.setRateLimiter(null);
+        }
+        assertEquals(6, listAppender.list.size());
+        assertEquals(14, limiter.suppressed());
+
+        limiter.close();
+        assertEquals(8, listAppender.list.size());
+        // each summary at the level of its call site, in no particular order
+        assertEquals(Set.of(Level.ERROR, Level.WARN),
+                Set.of(listAppender.list.get(6).getLevel(), listAppender.list.get(7).getLevel()));
+    }
 }
\ No newline at end of file
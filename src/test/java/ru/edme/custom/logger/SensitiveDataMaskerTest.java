@@ -0,0 +1,253 @@
+package ru.edme.custom.logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.edme.annotation.SensitiveField;
+import ru.edme.annotation.SensitiveObject;
+import ru.edme.model.Address;
+import ru.edme.model.Person;
+import ru.edme.pattern.MaskingPattern;
+import ru.edme.pattern.MaskingRule;
+import ru.edme.pattern.MaskingRules;
+
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.edme.pattern.MaskingPattern.DATE_YYYY_MM_DD;
+import static ru.edme.pattern.MaskingPattern.FULL_NAME;
+import static ru.edme.pattern.MaskingPattern.INN_10_DIGITS;
+import static ru.edme.pattern.MaskingPattern.INN_12_DIGITS;
+import static ru.edme.pattern.MaskingPattern.PASSPORT_SERIES;
+import static ru.edme.pattern.MaskingPattern.PHONE;
+
+public class SensitiveDataMaskerTest {
+
+    @AfterEach
+    public void tearDown() {
+        SensitiveDataMasker.setLimits(MaskingLimits.DEFAULT);
+        MaskingRules.publish(MaskingRules.builtIn());
+    }
+
+    @Test
+    public void testElementsOfCollectionsAreMasked() {
+        Address address = new Address();
+        address.setStreet("ул. Ленина");
+        Holder holder = new Holder();
+        holder.addresses = List.of(address, address);
+        holder.names = new ArrayList<>(List.of("Галина", "Петровна"));
+        holder.tags = new String[] {"vip", null};
+        assertEquals("Holder{addresses=[Address{street=ул. ***, house=null, apartment=null}, "
+                        + "Address{street=ул. ***, house=null, apartment=null}], names=[***, ***], tags=[vip, null]}",
+                SensitiveDataMasker.mask(holder));
+    }
+
+    @Test
+    public void testMapValuesAreMasked() {
+        Holder holder = new Holder();
+        Map<String, Holder> byName = new LinkedHashMap<>();
+        byName.put("first", holder);
+        assertEquals("{first=Holder{addresses=null, names=null, tags=null}}", SensitiveDataMasker.mask(byName));
+    }
+
+    @Test
+    public void testFastPathsAgreeWithRegex() {
+        assertEquals("56**", SensitiveDataMasker.mask("5657", PASSPORT_SERIES));
+        assertEquals("series 56**.", SensitiveDataMasker.mask("series 5657.", PASSPORT_SERIES));
+        assertEquals("56575", SensitiveDataMasker.mask("56575", PASSPORT_SERIES));
+        assertEquals("+7(918)***-**-69", SensitiveDataMasker.mask("+7(918)140-54-69", PHONE));
+        assertEquals("60********00", SensitiveDataMasker.maskWithPatterns("607080901000",
+                new MaskingPattern[] {INN_10_DIGITS, INN_12_DIGITS}));
+        assertEquals("0999-**-**", SensitiveDataMasker.mask(LocalDate.of(999, 1, 2), DATE_YYYY_MM_DD));
+        assertEquals("+10000-01-02", SensitiveDataMasker.mask(LocalDate.of(10000, 1, 2), DATE_YYYY_MM_DD));
+    }
+
+    @Test
+    public void testElementBudget() {
+        SensitiveDataMasker.setLimits(new MaskingLimits(2, 8, 8192));
+        assertEquals("[1, 2, ...(+3 more)]", SensitiveDataMasker.mask(List.of(1, 2, 3, 4, 5)));
+        assertEquals("[1, 2, ...(+1 more)]", SensitiveDataMasker.mask(new int[] {1, 2, 3}));
+    }
+
+    @Test
+    public void testCharacterBudget() {
+        SensitiveDataMasker.setLimits(new MaskingLimits(1000, 8, 10));
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) values.add("value" + i);
+        String masked = (String) SensitiveDataMasker.mask(values);
+        assertEquals("[value0, v[truncated], ...(+998 more)]", masked);
+    }
+
+    @Test
+    public void testCharacterBudgetCutsMaskedFieldValues() {
+        SensitiveDataMasker.setLimits(new MaskingLimits(50, 8, 40));
+        Message message = new Message();
+        message.text = "call +7(918)140-54-32 ".repeat(1000);
+        message.id = 7;
+        assertEquals("Message{text=call +7(918)***-**-32 call [truncated], id=[truncated]}",
+                SensitiveDataMasker.mask(message));
+    }
+
+    @Test
+    public void testDepthBudget() {
+        SensitiveDataMasker.setLimits(new MaskingLimits(50, 2, 8192));
+        assertEquals("[[[max-depth]]]", SensitiveDataMasker.mask(List.of(List.of(List.of(1)))));
+    }
+
+    @Test
+    public void testSelfContainingCollection() {
+        List<Object> self = new ArrayList<>();
+        self.add("a");
+        self.add(self);
+        assertEquals("[a, [circular-ref]]", SensitiveDataMasker.mask(self));
+    }
+
+    @Test
+    public void testDeferredSnapshotCopiesCollections() {
+        Holder holder = new Holder();
+        holder.names = new ArrayList<>(List.of("Галина"));
+        DeferredMasked deferred = (DeferredMasked) DeferredMasked.deferred(holder);
+        holder.names.add("Петровна");
+        assertEquals("Holder{addresses=null, names=[***], tags=null}", deferred.mask());
+    }
+
+    @Test
+    public void testBulkMaskingKeepsInputOrder() throws Exception {
+        List<Object> rows = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            Holder holder = new Holder();
+            holder.names = List.of("Галина", "row" + i);
+            rows.add(holder);
+            expected.append("Holder{addresses=null, names=[***, row").append(i).append("], tags=null}\n");
+        }
+        StringWriter out = new StringWriter();
+        long count = new BulkMasker(ForkJoinPool.commonPool(), 7, 3).maskTo(rows.stream(), out);
+        assertEquals(1000, count);
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void testJsonMasking() {
+        Person person = new Person();
+        person.setFirstName("Галина");
+        person.setBirthDate(LocalDate.of(2000, 12, 20));
+        person.setInn("607080901000");
+        String json = (String) JsonMasked.json(person);
+        assertTrue(json.contains("\"firstName\":\"***\""));
+        assertTrue(json.contains("\"birthDate\":\"2000-**-**\""));
+        assertTrue(json.contains("\"inn\":\"60********00\""));
+        assertTrue(json.contains("\"lastName\":null"));
+    }
+
+    @Test
+    public void testJsonCoversTheFieldsEagerModeRenders() throws Exception {
+        SensitiveDataMasker.setLimits(new MaskingLimits(2, 8, 8192));
+        Account account = new Account();
+        String eager = (String) SensitiveDataMasker.mask(account);
+        JsonNode json = new ObjectMapper().readTree((String) JsonMasked.json(account));
+
+        Set<String> eagerFields = new TreeSet<>();
+        for (Matcher m = Pattern.compile("[{ ](\\w+)=").matcher(eager); m.find(); ) eagerFields.add(m.group(1));
+        Set<String> jsonFields = new TreeSet<>();
+        json.fieldNames().forEachRemaining(jsonFields::add);
+        assertEquals(eagerFields, jsonFields);
+        assertEquals("Account{phone=+7(912)***-**-89, codes=[1, 2, ...(+1 more)], note=n}", eager);
+        assertEquals("+7(912)***-**-89", json.get("phone").asText());
+        assertEquals("[1,2,\"...(+1 more)\"]", json.get("codes").toString());
+    }
+
+    @Test
+    public void testMaskingScopeReusesRenderingUntilChanged() {
+        Person person = new Person();
+        person.setPhone("+7(912)345-67-89");
+        Address address = new Address();
+        address.setStreet("ул. Ленина");
+        person.setAddresss(address);
+        try (MaskingScope scope = MaskingScope.open(4)) {
+            long hits = MaskingStats.memoHits();
+            Object first = SensitiveDataMasker.mask(person);
+            assertEquals(first, SensitiveDataMasker.mask(person));
+            assertEquals(hits + 1, MaskingStats.memoHits());
+
+            address.setStreet("ул. Мира");
+            SensitiveDataMasker.mask(person);
+            assertEquals(hits + 1, MaskingStats.memoHits());
+            person.setPhone("+7(912)345-67-00");
+            assertTrue(SensitiveDataMasker.mask(person).toString().contains("phone=+7(912)***-**-00"));
+        }
+        assertEquals(null, MaskingScope.current());
+    }
+
+    @Test
+    public void testConfiguredRulesAreResolvedAgainstPublishedEngine() {
+        Card card = new Card();
+        card.number = "4111111111111111";
+        card.holder = "Иван";
+        // unknown until configured, so masked whole
+        assertEquals("Card{number=" + MaskingPattern.MASK.applyTo(card.number) + ", holder=***}",
+                SensitiveDataMasker.mask(card));
+
+        MaskingRules.publish(MaskingRules.of(List.of(MaskingRule.compile("CARD", "(\\d{4})\\d{8}(\\d{4})", "$1********$2"))));
+        assertEquals("Card{number=4111********1111, holder=***}", SensitiveDataMasker.mask(card));
+
+        MaskingRules.publish(MaskingRules.of(List.of(MaskingRule.compile("CARD", "\\d{12}(\\d{4})", "**** $1"))));
+        assertEquals("Card{number=**** 1111, holder=***}", SensitiveDataMasker.mask(card));
+
+        assertThrows(IllegalArgumentException.class, () -> MaskingRules.of(List.of(MaskingRule.compile("PHONE", "\\d+", ""))));
+        assertThrows(IllegalArgumentException.class, () -> MaskingRule.compile("CARD", "\\d+", "$1"));
+    }
+
+    @SensitiveObject
+    static class Card {
+        @SensitiveField(rules = "CARD")
+        String number;
+        @SensitiveField(rules = "FULL_NAME")
+        String holder;
+    }
+
+    @SensitiveObject
+    static class Account {
+        @SensitiveField(patterns = PHONE)
+        private String phone = "+7(912)345-67-89";
+        @SensitiveField(patterns = PHONE)
+        private long[] codes = {1, 2, 3};
+        private String note = "n";
+
+        public String getPhone() {
+            return phone.replace("-", "");
+        }
+
+        public String getDisplayName() {
+            return "computed";
+        }
+    }
+
+    @SensitiveObject
+    static class Message {
+        @SensitiveField(patterns = PHONE)
+        String text;
+        int id;
+    }
+
+    @SensitiveObject
+    static class Holder {
+        List<Address> addresses;
+        @SensitiveField(patterns = FULL_NAME)
+        List<String> names;
+        String[] tags;
+    }
+}
@@ -0,0 +1,142 @@
+package ru.edme.custom.logger;
+
+import org.junit.jupiter.api.Test;
+import ru.edme.annotation.SensitiveObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TraversalContextTest {
+
+    @Test
+    public void testEnterAndExit() {
+        TraversalContext context = new TraversalContext();
+        Object first = new Object();
+        Object second = new Object();
+        assertTrue(context.enter(first));
+        assertTrue(context.enter(second));
+        assertFalse(context.enter(first));
+        context.exit(second);
+        assertTrue(context.enter(second));
+        context.exit(second);
+        context.exit(first);
+        assertEquals(0, context.depth());
+    }
+
+    @Test
+    public void testEqualButDistinctObjectsAreNotCycles() {
+        TraversalContext context = new TraversalContext();
+        assertTrue(context.enter(new String("same")));
+        assertTrue(context.enter(new String("same")));
+    }
+
+    @Test
+    public void testThreadReusesItsContextOutsideNestedCalls() {
+        TraversalContext outer = TraversalContext.open(MaskingLimits.DEFAULT, 0);
+        assertTrue(outer.enter(new Object()));
+        TraversalContext nested = TraversalContext.open(MaskingLimits.DEFAULT, 0);
+        assertNotSame(outer, nested);
+        assertEquals(0, nested.depth());
+        nested.close();
+        outer.close();
+        TraversalContext next = TraversalContext.open(MaskingLimits.DEFAULT, 0);
+        assertSame(outer, next);
+        assertEquals(0, next.depth());
+        next.close();
+    }
+
+    @Test
+    public void testDeepPathSpillsOver() {
+        TraversalContext context = new TraversalContext();
+        List<Object> path = new ArrayList<>();
+        for (int i = 0; i < TraversalContext.INLINE_LIMIT * 4; i++) {
+            Object obj = new Object();
+            path.add(obj);
+            assertTrue(context.enter(obj));
+        }
+        for (Object obj : path) assertFalse(context.enter(obj));
+        for (int i = path.size() - 1; i >= 0; i--) context.exit(path.get(i));
+        assertEquals(0, context.depth());
+    }
+
+    @Test
+    public void testMatchesIdentityMapOnRandomWalks() {
+        Random random = new Random(42);
+        Object[] pool = new Object[64];
+        for (int i = 0; i < pool.length; i++) pool[i] = new Object();
+        for (int round = 0; round < 200; round++) {
+            TraversalContext context = new TraversalContext();
+            Map<Object, Boolean> expected = new IdentityHashMap<>();
+            Deque<Object> path = new ArrayDeque<>();
+            for (int step = 0; step < 100; step++) {
+                if (!path.isEmpty() && random.nextInt(3) == 0) {
+                    Object obj = path.pop();
+                    expected.remove(obj);
+                    context.exit(obj);
+                } else {
+                    Object obj = pool[random.nextInt(random.nextBoolean() ? 8 : pool.length)];
+                    boolean entered = context.enter(obj);
+                    assertEquals(expected.put(obj, Boolean.TRUE) == null, entered);
+                    if (entered) path.push(obj);
+                }
+                assertEquals(expected.size(), context.depth());
+            }
+        }
+    }
+
+    @Test
+    public void testCircularAndSharedReferences() {
+        Node first = new Node("first");
+        Node second = new Node("second");
+        first.left = second;
+        second.left = first;
+        assertEquals("Node{name=first, left=Node{name=second, left=[circular-ref], right=null}, right=null}",
+                SensitiveDataMasker.mask(first));
+
+        Node root = new Node("root");
+        root.left = new Node("shared");
+        root.right = root.left;
+        assertEquals("Node{name=root, left=Node{name=shared, left=null, right=null}, right=Node{name=shared, left=null, right=null}}",
+                SensitiveDataMasker.mask(root));
+    }
+
+    @Test
+    public void testDeepChainHasNoFalseCycles() {
+        Node head = new Node("0");
+        Node tail = head;
+        for (int i = 1; i < 100; i++) {
+            tail.left = new Node(String.valueOf(i));
+            tail = tail.left;
+        }
+        SensitiveDataMasker.setLimits(new MaskingLimits(50, 200, 1 << 20));
+        try {
+            String masked = (String) SensitiveDataMasker.mask(head);
+            assertFalse(masked.contains("[circular-ref]"));
+            assertTrue(masked.contains("name=99, left=null, right=null"));
+        } finally {
+            SensitiveDataMasker.setLimits(MaskingLimits.DEFAULT);
+        }
+    }
+
+    @SensitiveObject
+    static class Node {
+        String name;
+        Node left;
+        Node right;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package ru.edme.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class BindColumnsTest {
+
+    @Test
+    public void testMapsPlaceholdersToColumns() {
+        assertArrayEquals(new String[] {"first_name", "phone", "id"},
+                columns("insert into person (first_name, phone, id) values (?, ?, ?)"));
+        assertArrayEquals(new String[] {"phone", "email", "inn", "inn", null},
+                columns("select p1_0.id from person p1_0 where p1_0.phone=? and upper(p1_0.email) like upper(?)"
+                        + " and p1_0.inn in (?,?) limit ?"));
+        assertArrayEquals(new String[] {"first_name", "snils"},
+                columns("update person set first_name=? where note='it''s ?' -- ?\n and \"SNILS\" = ?"));
+    }
+
+    private static String[] columns(String sql) {
+        BindColumns columns = BindColumns.of(sql);
+        String[] result = new String[columns.placeholders().length];
+        for (int i = 0; i < result.length; i++) result[i] = columns.column(i + 1);
+        return result;
+    }
+}
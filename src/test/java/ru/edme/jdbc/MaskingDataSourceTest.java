@@ -0,0 +1,63 @@
+package ru.edme.jdbc;
+
+import org.junit.jupiter.api.Test;
+import ru.edme.pattern.MaskingPattern;
+import ru.edme.pattern.MaskingPatternSet;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class MaskingDataSourceTest {
+
+    @Test
+    public void testRenderMasksBindsByColumnRules() {
+        MaskingDataSource dataSource = new MaskingDataSource(null, Map.of(
+                "inn", MaskingPatternSet.of(MaskingPattern.INN_10_DIGITS),
+                "phone", MaskingPatternSet.of(MaskingPattern.PHONE)), 0, 0);
+        assertEquals("update person set phone='+7(912)***-**-89', age=42 where inn=77********93",
+                dataSource.render("update person set phone=?, age=? where inn=?",
+                        new Object[] {null, "+7(912)345-67-89", 42, 7707083893L}));
+        assertEquals("select * from person where id=7707083893 and note='***@mail.ru'",
+                dataSource.render("select * from person where id=? and note=?",
+                        new Object[] {null, 7707083893L, "ivan@mail.ru"}));
+    }
+
+    @Test
+    public void testProxiesLeadBackToProxies() throws Exception {
+        ResultSet resultSet = fake(ResultSet.class, null);
+        PreparedStatement statement = fake(PreparedStatement.class, resultSet);
+        Connection connection = fake(Connection.class, statement);
+        MaskingDataSource dataSource = new MaskingDataSource(fake(DataSource.class, connection), Map.of(), Long.MAX_VALUE, 0);
+
+        Connection proxy = dataSource.getConnection();
+        assertEquals(proxy, proxy);
+        assertNotEquals(proxy, connection);
+        assertEquals(System.identityHashCode(proxy), proxy.hashCode());
+        assertSame(proxy, proxy.unwrap(Connection.class));
+
+        PreparedStatement proxyStatement = proxy.prepareStatement("select 1");
+        assertEquals(proxyStatement, proxyStatement);
+        assertSame(proxy, proxyStatement.getConnection());
+        assertSame(proxyStatement, proxyStatement.executeQuery().getStatement());
+        Statement plain = proxy.createStatement();
+        assertSame(proxy, plain.getConnection());
+        assertSame(plain, plain.executeQuery("select 1").getStatement());
+    }
+
+    // Every method of the fake returns result, or null where the return type does not fit.
+    private static <T> T fake(Class<T> type, Object result) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) ->
+                method.getName().equals("equals") ? proxy == args[0]
+                        : method.getName().equals("hashCode") ? 0
+                        : method.getReturnType().isInstance(result) ? result : null));
+    }
+}
@@ -0,0 +1,113 @@
+package ru.edme.pattern;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Differential check of the prefilters and fast paths: on generated inputs every pattern must give exactly what its
+// bare regex gives.
+public class PrefilterTest {
+
+    private static final int INPUTS = 20_000;
+
+    private static final String[] TOKENS = {
+            "+7(912)345-67-89", "+7(912)345-67-8", "+7(912)3456789", "123-456-789 01", "123-456-789-01",
+            "4510", "451", "123456", "12345", "1234567", "7707083893", "500100732259", "770-001", "770001",
+            "12.03.1985", "1985-03-12", "12-03-1985", "1985.03.1", "ivan.petrov@mail.ru", "a@b.c", "@mail.ru",
+            "Иван", "Петров", "ИВАН", "иван", "Ёлкин", "И", "ГУ МВД", "ОВД", "ФМС", "МВД России",
+            "г. Москва, ул. Ленина, д. 1, кв. 2", "ул.", "дом", "Москва", "-", ".", "+", "(", ")", "@", ",", "_",
+            "a", "Z", "x1", "1", "22", "ё", "\n", "\t"
+    };
+
+    @Test
+    public void testPatternsMatchTheirBareRegex() {
+        Random random = new Random(8);
+        for (MaskingPattern pattern : MaskingPattern.values()) {
+            for (int i = 0; i < INPUTS; i++) {
+                String input = input(random);
+                String expected = reference(pattern, input);
+                assertEquals(expected, pattern.applyTo(input), pattern + " on \"" + input + "\"");
+
+                StringBuilder out = new StringBuilder();
+                pattern.applyTo((CharSequence) input, out);
+                assertEquals(expected, out.toString(), pattern + " appending \"" + input + "\"");
+            }
+        }
+    }
+
+    @Test
+    public void testRejectedInputsHaveNoMatch() {
+        Random random = new Random(8);
+        for (MaskingPattern pattern : MaskingPattern.values()) {
+            int rejected = 0;
+            for (int i = 0; i < INPUTS; i++) {
+                String input = input(random);
+                if (pattern.prefilter().mayMatch(input)) continue;
+                rejected++;
+                assertEquals(input, reference(pattern, input), pattern + " rejected \"" + input + "\"");
+            }
+            // MASK matches everything, so its prefilter must never reject
+            if (pattern != MaskingPattern.MASK) assertTrue(rejected > 0, pattern + " rejected no input");
+        }
+    }
+
+    @Test
+    public void testFusedSetsMatchChainedRegexes() {
+        Random random = new Random(8);
+        MaskingPattern[] all = MaskingPattern.values();
+        for (int i = 0; i < INPUTS; i++) {
+            MaskingPattern[] patterns = new MaskingPattern[1 + random.nextInt(4)];
+            for (int j = 0; j < patterns.length; j++) patterns[j] = all[random.nextInt(all.length)];
+            String input = input(random);
+            String expected = input;
+            for (MaskingPattern pattern : patterns) expected = reference(pattern, expected);
+            assertEquals(expected, MaskingPatternSet.of(patterns).applyTo(input),
+                    Arrays.toString(patterns) + " on \"" + input + "\"");
+        }
+    }
+
+    private static String input(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int tokens = random.nextInt(5);
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0 && random.nextBoolean()) sb.append(' ');
+            sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return sb.toString();
+    }
+
+    // What the pattern gave before it had a prefilter or a fast path.
+    private static String reference(MaskingPattern pattern, String input) {
+        if (pattern == MaskingPattern.ADDRESS) {
+            StringBuilder sb = new StringBuilder();
+            AddressMasker.maskTo(input, sb);
+            return sb.toString();
+        }
+        if (pattern == MaskingPattern.MASK) {
+            return Pattern.compile(pattern.regex()).matcher(input).replaceAll(match -> "*****");
+        }
+        return Pattern.compile(pattern.regex()).matcher(input).replaceAll(replacement(pattern));
+    }
+
+    private static String replacement(MaskingPattern pattern) {
+        return switch (pattern) {
+            case EMAIL -> "***@$2";
+            case PHONE -> "$1***-**-$2";
+            case SNILS -> "$1-***-***-**";
+            case PASSPORT_NUMBER, POSTAL_CODE -> "******";
+            case PASSPORT_SERIES -> "$1**";
+            case PASSPORT_ISSUED_BY -> "$1 ***";
+            case SUBDIVISION_CODE -> "$1-***";
+            case DATE_DD_MM_YYYY -> "**.**.$3";
+            case DATE_YYYY_MM_DD -> "$1-**-**";
+            case INN_10_DIGITS, INN_12_DIGITS -> "$1********$2";
+            case FULL_NAME -> "***";
+            default -> throw new IllegalArgumentException(pattern.name());
+        };
+    }
+}
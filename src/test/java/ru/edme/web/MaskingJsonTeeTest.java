@@ -0,0 +1,57 @@
+package ru.edme.web;
+
+import org.junit.jupiter.api.Test;
+import ru.edme.pattern.MaskingPatternSet;
+
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.edme.pattern.MaskingPattern.EMAIL;
+import static ru.edme.pattern.MaskingPattern.INN_10_DIGITS;
+import static ru.edme.pattern.MaskingPattern.PHONE;
+
+public class MaskingJsonTeeTest {
+    private static final Map<String, MaskingPatternSet> RULES = Map.of(
+            "phone", MaskingPatternSet.of(PHONE),
+            "/client/email", MaskingPatternSet.of(EMAIL),
+            "inns", MaskingPatternSet.of(INN_10_DIGITS));
+
+    @Test
+    public void testMasksFieldsWhateverTheChunking() {
+        String json = "{\"name\":\"Иван\",\"phone\":\"+7(912)345-67-89\",\"email\":\"a@b.ru\","
+                + "\"client\":{\"email\":\"ivan@mail.ru\",\"note\":null},\"inns\":[1234567890,\"1234567890\"]}";
+        String expected = "{\"name\":\"Иван\",\"phone\":\"+7(912)***-**-89\",\"email\":\"a@b.ru\","
+                + "\"client\":{\"email\":\"***@mail.ru\",\"note\":null},\"inns\":[\"12********90\",\"12********90\"]}";
+        byte[] bytes = json.getBytes(UTF_8);
+
+        for (int chunk : new int[] {1, 3, 7, bytes.length}) {
+            MaskingJsonTee tee = new MaskingJsonTee(RULES, 4096);
+            for (int i = 0; i < bytes.length; i += chunk) tee.feed(bytes, i, Math.min(chunk, bytes.length - i));
+            assertEquals(expected, tee.result(), "chunk " + chunk);
+        }
+    }
+
+    @Test
+    public void testCapsOutputAndReportsMalformedBodies() {
+        byte[] bytes = "{\"phone\":\"+7(912)345-67-89\"}".getBytes(UTF_8);
+        MaskingJsonTee capped = new MaskingJsonTee(RULES, 10);
+        capped.feed(bytes, 0, bytes.length);
+        assertEquals("{\"phone\":\"...(truncated)", capped.result());
+
+        byte[] malformed = "{\"a\":}".getBytes(UTF_8);
+        MaskingJsonTee tee = new MaskingJsonTee(RULES, 4096);
+        tee.feed(malformed, 0, malformed.length);
+        assertEquals("{\"a\"[unparseable body]", tee.result());
+    }
+
+    @Test
+    public void testStopsAtAValueLongerThanTheCap() {
+        byte[] bytes = ("{\"id\":1,\"note\":\"" + "x".repeat(100_000) + "\",\"phone\":\"+7(912)345-67-89\"}").getBytes(UTF_8);
+        for (int chunk : new int[] {64, 8192}) {
+            MaskingJsonTee tee = new MaskingJsonTee(RULES, 100);
+            for (int i = 0; i < bytes.length; i += chunk) tee.feed(bytes, i, Math.min(chunk, bytes.length - i));
+            assertEquals("{\"id\":1,\"note\"...(truncated)", tee.result(), "chunk " + chunk);
+        }
+    }
+}